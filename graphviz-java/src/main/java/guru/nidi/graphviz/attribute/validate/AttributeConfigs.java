@@ -35,6 +35,10 @@ final class AttributeConfigs {
         return MAP.get(name);
     }
 
+    static Map<String, List<AttributeConfig>> all() {
+        return Collections.unmodifiableMap(MAP);
+    }
+
     static {
         add("Damping", entry("G", DOUBLE, 0.99, 0.0).engines(NEATO));
         add("K", entry("GC", DOUBLE, 0.3, 0.0).engines(SFDP, FDP));
@@ -22,61 +22,96 @@ import guru.nidi.graphviz.attribute.validate.AttributeConfig.Format;
 
 import javax.annotation.Nullable;
 import java.util.*;
-import java.util.stream.StreamSupport;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static guru.nidi.graphviz.attribute.validate.AttributeConfig.Engine.DOT;
 import static guru.nidi.graphviz.attribute.validate.AttributeConfig.Engine.NOT_DOT;
 import static guru.nidi.graphviz.attribute.validate.Datatype.*;
 import static guru.nidi.graphviz.attribute.validate.ValidatorMessage.Severity.ERROR;
 import static guru.nidi.graphviz.attribute.validate.ValidatorMessage.Severity.WARNING;
-import static java.util.Collections.emptyList;
-import static java.util.Collections.singletonList;
-import static java.util.stream.Collectors.joining;
-import static java.util.stream.Collectors.toList;
 
 public final class AttributeValidator {
     public enum Scope {
         GRAPH, SUB_GRAPH, CLUSTER, NODE, EDGE
     }
 
+    //the configs resolved for each engine/format combination, shared by all validators
+    private static final Map<List<Object>, Map<String, Resolved>> TABLES = new ConcurrentHashMap<>();
+
     @Nullable
     private final Engine engine;
     @Nullable
     private final Format format;
+    private final Map<String, Resolved> table;
 
     public AttributeValidator(@Nullable String engine, @Nullable String format) {
         this.engine = engine == null ? null : Engine.valueOf(engine.toUpperCase(Locale.ENGLISH));
         this.format = format == null ? null : Format.valueOf(format.toUpperCase(Locale.ENGLISH));
+        table = TABLES.computeIfAbsent(Arrays.asList(this.engine, this.format), k -> resolveAll());
     }
 
     public List<ValidatorMessage> validate(Attributes<? extends For> attrs, Scope scope) {
-        return StreamSupport.stream(attrs.spliterator(), false)
-                .flatMap(entry -> validate(entry.getKey(), entry.getValue(), scope).stream())
-                .collect(toList());
+        return validateAll(attrs, scope, new ArrayList<>());
     }
 
     public List<ValidatorMessage> validate(String key, Object value, Scope scope) {
-        final List<AttributeConfig> configs = AttributeConfigs.get(key);
-        if (configs == null) {
-            return singletonList(new ValidatorMessage(ERROR, key, "Attribute is unknown."));
+        final List<ValidatorMessage> messages = new ArrayList<>();
+        validate(key, value, scope, messages);
+        return messages;
+    }
+
+    private void validate(String key, Object value, Scope scope, List<ValidatorMessage> messages) {
+        final Resolved resolved = table.get(key);
+        if (resolved == null) {
+            messages.add(new ValidatorMessage(ERROR, key, "Attribute is unknown."));
+        } else if (resolved.config == null) {
+            messages.add(resolved.error);
+        } else {
+            validateNonType(key, value, scope, resolved.config, messages);
+            validateType(key, value, resolved.config, messages);
+        }
+    }
+
+    /**
+     * Validate all attributes into the given list, which is cleared first.
+     * Reusing the list avoids any allocation if the attributes are valid.
+     *
+     * @return the given list
+     */
+    public List<ValidatorMessage> validateAll(Attributes<? extends For> attrs, Scope scope,
+                                              List<ValidatorMessage> result) {
+        result.clear();
+        for (final Entry<String, Object> entry : attrs) {
+            validate(entry.getKey(), entry.getValue(), scope, result);
         }
+        return result;
+    }
+
+    private Map<String, Resolved> resolveAll() {
+        final Map<String, Resolved> res = new HashMap<>();
+        for (final Entry<String, List<AttributeConfig>> entry : AttributeConfigs.all().entrySet()) {
+            res.put(entry.getKey(), resolve(entry.getKey(), entry.getValue()));
+        }
+        return res;
+    }
+
+    private Resolved resolve(String key, List<AttributeConfig> configs) {
         final AttributeConfig engineConfig = findConfigForEngine(configs);
         if (engineConfig == null) {
-            return singletonList(new ValidatorMessage(
+            return new Resolved(new ValidatorMessage(
                     ERROR, key, "Attribute is not allowed for engine '" + engine + "'."));
         }
         final AttributeConfig formatConfig = findConfigForFormat(configs);
         if (formatConfig == null) {
-            return singletonList(new ValidatorMessage(
+            return new Resolved(new ValidatorMessage(
                     ERROR, key, "Attribute is not allowed for format '" + format + "'."));
         }
         if (!engineConfig.equals(formatConfig)) {
-            return singletonList(new ValidatorMessage(
+            return new Resolved(new ValidatorMessage(
                     ERROR, key, "Attribute is not allowed for engine '" + engine + "' and format '" + format + "'."));
         }
-        final List<ValidatorMessage> messages = validateNonType(key, value, scope, engineConfig);
-        messages.addAll(validateType(key, value, engineConfig));
-        return messages;
+        return new Resolved(engineConfig);
     }
 
     private AttributeConfig findConfigForEngine(List<AttributeConfig> configs) {
@@ -101,8 +136,8 @@ public final class AttributeValidator {
                 .orElse(null);
     }
 
-    private List<ValidatorMessage> validateNonType(String key, Object value, Scope scope, AttributeConfig config) {
-        final List<ValidatorMessage> messages = new ArrayList<>();
+    private void validateNonType(String key, Object value, Scope scope, AttributeConfig config,
+                                 List<ValidatorMessage> messages) {
         if (!config.scopes.contains(scope)) {
             messages.add(new ValidatorMessage(ERROR, key, "Attribute is not allowed for scope '" + scope + "'."));
         }
@@ -110,28 +145,34 @@ public final class AttributeValidator {
             messages.add(new ValidatorMessage(
                     WARNING, key, "Attribute is set to its default value '" + config.defVal + "'."));
         }
-        final Double val = tryParseDouble(value.toString());
-        if (config.min != null && val != null && val < config.min) {
-            messages.add(new ValidatorMessage(
-                    WARNING, key, "Attribute has a minimum of '" + config.min + "' but is set to '" + value + "'."));
+        if (config.min != null) {
+            final Double val = tryParseDouble(value.toString());
+            if (val != null && val < config.min) {
+                messages.add(new ValidatorMessage(WARNING, key,
+                        "Attribute has a minimum of '" + config.min + "' but is set to '" + value + "'."));
+            }
         }
-        return messages;
     }
 
-    private List<ValidatorMessage> validateType(String key, Object value, AttributeConfig config) {
-        final List<ValidatorMessage> typeMessages = config.types.stream().map(t -> t.validate(value)).collect(toList());
-        if (typeMessages.size() == 1) {
-            if (typeMessages.get(0) != null) {
-                return singletonList(typeMessages.get(0).at(key));
+    private void validateType(String key, Object value, AttributeConfig config, List<ValidatorMessage> messages) {
+        if (config.types.size() == 1) {
+            final ValidatorMessage message = config.types.get(0).validate(value);
+            if (message != null) {
+                messages.add(message.at(key));
             }
-        } else {
-            if (typeMessages.stream().noneMatch(Objects::isNull)) {
-                return singletonList(new ValidatorMessage(
-                        ERROR, key, "'" + value + "' is not valid for any of the types '"
-                        + config.types.stream().map(t -> t.name).collect(joining(", ")) + "'."));
+            return;
+        }
+        for (final Datatype type : config.types) {
+            if (type.validate(value) == null) {
+                return;
             }
         }
-        return emptyList();
+        final StringJoiner names = new StringJoiner(", ");
+        for (final Datatype type : config.types) {
+            names.add(type.name);
+        }
+        messages.add(new ValidatorMessage(
+                ERROR, key, "'" + value + "' is not valid for any of the types '" + names + "'."));
     }
 
     private boolean isValueEquals(Object config, Object value) {
@@ -149,4 +190,21 @@ public final class AttributeValidator {
         }
         return config.toString().equals(value.toString());
     }
+
+    private static final class Resolved {
+        @Nullable
+        final AttributeConfig config;
+        @Nullable
+        final ValidatorMessage error;
+
+        Resolved(AttributeConfig config) {
+            this.config = config;
+            this.error = null;
+        }
+
+        Resolved(ValidatorMessage error) {
+            this.config = null;
+            this.error = error;
+        }
+    }
 }
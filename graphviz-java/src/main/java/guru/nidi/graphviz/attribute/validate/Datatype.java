@@ -37,8 +37,8 @@ abstract class Datatype {
                 .replace("%f", "([+-]?(\\d+([.]\\d*)?(e[+-]?\\d+)?|[.]\\d+(e[+-]?\\d+)?))"));
     }
 
-    static boolean matches(Object value, String pattern) {
-        return pattern(pattern).matcher(value.toString()).matches();
+    static boolean matches(Object value, Pattern pattern) {
+        return pattern.matcher(value.toString()).matches();
     }
 
     static Double doubleValue(Object value) {
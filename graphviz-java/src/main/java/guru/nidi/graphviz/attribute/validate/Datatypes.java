@@ -15,10 +15,17 @@
  */
 package guru.nidi.graphviz.attribute.validate;
 
+import java.util.regex.Pattern;
+
 import static guru.nidi.graphviz.attribute.validate.ValidatorMessage.Severity.ERROR;
 import static guru.nidi.graphviz.attribute.validate.ValidatorMessage.Severity.WARNING;
 
 final class Datatypes {
+    static final Pattern INT_PATTERN = Datatype.pattern("%d");
+    static final Pattern HEX_COLOR = Datatype.pattern("#%x%x ?%x%x ?%x%x( ?%x%x)?");
+    static final Pattern HSV_COLOR = Datatype.pattern("#%n[, ]+%n[, ]+%n");
+    static final Pattern NAMED_COLOR = Datatype.pattern("[^#].*");
+
     static final Datatype INT = new PatternDatatype("integer", "%d");
     static final Datatype DOUBLE = new PatternDatatype("float", "%f");
     static final Datatype DOUBLE_LIST = new PatternDatatype("list of floats", "%f(:%f)*");
@@ -27,7 +34,7 @@ final class Datatypes {
         ValidatorMessage validate(Object value) {
             return boolValue(value.toString()) == null
                     ? new ValidatorMessage(ERROR, "'" + value + "' is not a valid boolean.")
-                    : matches(value, "%d")
+                    : matches(value, INT_PATTERN)
                     ? new ValidatorMessage(WARNING, "Using numerical value '" + value + "' as boolean.")
                     : null;
         }
@@ -97,9 +104,9 @@ final class Datatypes {
     static final Datatype COLOR = new Datatype("color") {
         @Override
         ValidatorMessage validate(Object value) {
-            return matches(value, "#%x%x ?%x%x ?%x%x( ?%x%x)?")
-                    || matches(value, "#%n[, ]+%n[, ]+%n")
-                    || matches(value, "[^#].*")
+            return matches(value, HEX_COLOR)
+                    || matches(value, HSV_COLOR)
+                    || matches(value, NAMED_COLOR)
                     ? null : new ValidatorMessage(ERROR, "'" + value + "' is not a valid " + name + ".");
         }
     };
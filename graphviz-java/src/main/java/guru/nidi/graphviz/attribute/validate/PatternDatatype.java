@@ -15,14 +15,16 @@
  */
 package guru.nidi.graphviz.attribute.validate;
 
+import java.util.regex.Pattern;
+
 import static guru.nidi.graphviz.attribute.validate.ValidatorMessage.Severity.ERROR;
 
 class PatternDatatype extends Datatype {
-    private final String pattern;
+    private final Pattern pattern;
 
     PatternDatatype(String name, String pattern) {
         super(name);
-        this.pattern = pattern;
+        this.pattern = pattern(pattern);
     }
 
     @Override
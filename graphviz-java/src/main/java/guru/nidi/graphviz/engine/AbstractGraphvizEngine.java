@@ -67,8 +67,12 @@ public abstract class AbstractGraphvizEngine implements GraphvizEngine {
 
     protected String replacePaths(String src, Pattern pattern, Function<String, String> replacer) {
         final Matcher matcher = pattern.matcher(src);
-        final StringBuilder s = new StringBuilder();
+        if (!matcher.find()) {
+            return src;
+        }
+        final StringBuilder s = new StringBuilder(src.length());
         int last = 0;
+        matcher.reset();
         while (matcher.find()) {
             final String attr = matcher.group(1);
             s.append(src, last, matcher.start(1));
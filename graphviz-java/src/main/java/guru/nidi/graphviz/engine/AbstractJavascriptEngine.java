@@ -23,13 +23,43 @@ public abstract class AbstractJavascriptEngine implements JavascriptEngine {
 
     @Override
     public String executeJavascript(String pre, String src, String post) {
-        return execute(pre + "'" + escape(src) + "'" + post);
+        final StringBuilder js = new StringBuilder(pre.length() + src.length() + post.length() + 16).append(pre);
+        appendQuoted(js, src);
+        return execute(js.append(post).toString());
     }
 
     protected abstract String execute(String js);
 
-    private String escape(String js) {
-        return js.replace("\\", "\\\\").replace("'", "\\'").replaceAll("\\R", "\\\\n");
+    //single quoted javascript string, all kinds of line breaks are replaced by \n
+    static void appendQuoted(StringBuilder js, String s) {
+        js.append('\'');
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            switch (c) {
+                case '\\':
+                case '\'':
+                    js.append('\\').append(c);
+                    break;
+                case '\r':
+                    if (i + 1 < s.length() && s.charAt(i + 1) == '\n') {
+                        i++;
+                    }
+                    js.append("\\n");
+                    break;
+                case '\n':
+                case '\u000B':
+                case '\f':
+                case '\u0085':
+                case '\u2028':
+                case '\u2029':
+                    js.append("\\n");
+                    break;
+                default:
+                    js.append(c);
+                    break;
+            }
+        }
+        js.append('\'');
     }
 
     @Override
@@ -20,28 +20,136 @@ import guru.nidi.graphviz.service.SystemUtils;
 import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.*;
 import java.util.AbstractMap.SimpleEntry;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.*;
+import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 import static guru.nidi.graphviz.engine.IoUtils.readStream;
+import static java.util.stream.Collectors.toList;
 
 public abstract class AbstractJsGraphvizEngine extends AbstractGraphvizEngine {
     private static final Map<Class<?>, ThreadLocal<JavascriptEngine>> ENGINES = new HashMap<>();
+    private static final String SEPARATOR = "\u001e";
     private final Supplier<JavascriptEngine> engineSupplier;
+    private int poolSize;
+    @Nullable
+    private volatile BlockingQueue<JavascriptEngine> pool;
 
     protected AbstractJsGraphvizEngine(boolean sync, Supplier<JavascriptEngine> engineSupplier) {
         super(sync);
         this.engineSupplier = engineSupplier;
     }
 
+    /**
+     * Use a fixed number of javascript engines shared by all threads instead of one engine per thread.
+     * All engines are created and initialized by {@link #init}, a render leases one of them
+     * and waits if all are in use.
+     * The javascript engine must support being used by different threads one after the other.
+     *
+     * @param poolSize the number of engines, 0 to use one engine per thread (the default)
+     */
+    protected void usePool(int poolSize) {
+        if (poolSize < 0) {
+            throw new IllegalArgumentException("Pool size must not be negative.");
+        }
+        this.poolSize = poolSize;
+    }
+
     @Override
     protected void doInit() {
-        engine().executeJavascript(vizJsCode());
-        engine().executeJavascript(renderJsCode());
-        execute("graph g { a -- b }", Options.create(), null);
+        if (poolSize > 0) {
+            initPool();
+        } else {
+            loadLibrary(engine(), vizJsCode());
+            loadLibrary(engine(), renderJsCode());
+            execute("graph g { a -- b }", Options.create(), null);
+        }
+    }
+
+    //the engines are initialized in parallel on their own threads, they only share the javascript source
+    private void initPool() {
+        final String code = vizJsCode() + ";" + renderJsCode();
+        final BlockingQueue<JavascriptEngine> engines = new LinkedBlockingQueue<>();
+        final ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(poolSize, Runtime.getRuntime().availableProcessors()), AbstractJsGraphvizEngine::initThread);
+        boolean ok = false;
+        try {
+            final Callable<Void> init = () -> {
+                initPoolEngine(engines, code);
+                return null;
+            };
+            for (final Future<Void> future : executor.invokeAll(Collections.nCopies(poolSize, init))) {
+                future.get();
+            }
+            ok = true;
+        } catch (ExecutionException e) {
+            throw new GraphvizException("Could not initialize javascript engine: " + e.getCause().getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GraphvizException("Interrupted while initializing javascript engines.", e);
+        } finally {
+            executor.shutdownNow();
+            if (!ok) {
+                engines.forEach(IoUtils::closeQuietly);
+            }
+        }
+        pool = engines;
+    }
+
+    private void initPoolEngine(BlockingQueue<JavascriptEngine> engines, String code) {
+        final JavascriptEngine engine = engineSupplier.get();
+        engines.add(engine);
+        initPooledEngine(engine);
+        loadLibrary(engine, code);
+        engine.executeFunction("renderValues", "graph g { a -- b }", Options.create().toJson(false), "");
+    }
+
+    private static Thread initThread(Runnable r) {
+        final Thread thread = new Thread(r, "javascript engine init");
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    //library code is parsed only once for all graal contexts
+    static void loadLibrary(JavascriptEngine engine, String code) {
+        if (engine instanceof GraalJavascriptEngine) {
+            ((GraalJavascriptEngine) engine).executeLibrary(code);
+        } else {
+            engine.executeJavascript(code);
+        }
+    }
+
+    /**
+     * Prepare a pooled engine before the graphviz javascript is loaded.
+     */
+    protected void initPooledEngine(JavascriptEngine engine) {
+    }
+
+    private <T> T withEngine(Function<JavascriptEngine, T> action) {
+        final BlockingQueue<JavascriptEngine> engines = pool;
+        if (engines == null) {
+            return action.apply(engine());
+        }
+        final JavascriptEngine engine;
+        try {
+            engine = engines.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GraphvizException("Interrupted while waiting for javascript engine.", e);
+        }
+        try {
+            return action.apply(engine);
+        } finally {
+            if (engines == pool) {
+                engines.add(engine);
+            } else {
+                IoUtils.closeQuietly(engine);
+            }
+        }
     }
 
     protected JavascriptEngine engine() {
@@ -57,6 +165,11 @@ public abstract class AbstractJsGraphvizEngine extends AbstractGraphvizEngine {
 
     @Override
     public void close() {
+        final BlockingQueue<JavascriptEngine> engines = pool;
+        if (engines != null) {
+            pool = null;
+            engines.forEach(IoUtils::closeQuietly);
+        }
         final ThreadLocal<JavascriptEngine> holder = ENGINES.get(getClass());
         if (holder != null) {
             final JavascriptEngine engine = holder.get();
@@ -75,16 +188,53 @@ public abstract class AbstractJsGraphvizEngine extends AbstractGraphvizEngine {
         return EngineResult.fromString(jsVizExec(src, options));
     }
 
+    /**
+     * Render all sources with one call to javascript.
+     * The batch fails as a whole: if one source cannot be rendered, a GraphvizException with its error is thrown
+     * and no results are returned.
+     */
+    @Override
+    public List<EngineResult> executeAll(List<String> srcs, List<Options> options, @Nullable Rasterizer rasterizer) {
+        if (rasterizer instanceof BuiltInRasterizer) {
+            throw new GraphvizException("Built-in Rasterizer can only be used together with GraphvizCmdLineEngine.");
+        }
+        final List<String> results = jsVizExecAll(srcs, options);
+        if (results.size() != srcs.size()) {
+            throw new GraphvizException("Expected " + srcs.size() + " results, but got " + results.size());
+        }
+        return results.stream().map(EngineResult::fromString).collect(toList());
+    }
+
+    //sources containing SEPARATOR cannot be joined, they are rendered one by one
+    protected List<String> jsVizExecAll(List<String> srcs, List<Options> options) {
+        if (srcs.stream().anyMatch(src -> src.contains(SEPARATOR))) {
+            return IntStream.range(0, srcs.size())
+                    .mapToObj(i -> jsVizExec(srcs.get(i), options.get(i)))
+                    .collect(toList());
+        }
+        final StringJoiner processed = new StringJoiner(SEPARATOR);
+        final StringJoiner opts = new StringJoiner(",", "[", "]");
+        final StringJoiner memory = new StringJoiner(",", "[", "]");
+        for (int i = 0; i < srcs.size(); i++) {
+            final Options o = options.get(i);
+            final Entry<String, Options> srcAndOpts = preprocessCode(srcs.get(i), o);
+            processed.add(srcAndOpts.getKey());
+            opts.add(srcAndOpts.getValue().toJson(false));
+            memory.add(o.totalMemory == null ? "0" : o.totalMemory.toString());
+        }
+        final String res = withEngine(engine -> engine.executeFunction(
+                "renderAllValues", processed.toString(), opts.toString(), memory.toString()));
+        return Arrays.asList(res.split(SEPARATOR, -1));
+    }
+
     protected String jsVizExec(String src, Options options) {
         if (src.startsWith("totalMemory") || src.startsWith("render")) {
             return src;
         }
-        final String memory = options.totalMemory == null ? "" : "totalMemory=" + options.totalMemory + ";";
+        final String memory = options.totalMemory == null ? "" : options.totalMemory.toString();
         final Entry<String, Options> srcAndOpts = preprocessCode(src, options);
-        return engine().executeJavascript(
-                memory + "render(",
-                srcAndOpts.getKey(),
-                "," + srcAndOpts.getValue().toJson(false) + ");");
+        return withEngine(engine -> engine.executeFunction(
+                "renderValues", srcAndOpts.getKey(), srcAndOpts.getValue().toJson(false), memory));
     }
 
     protected Entry<String, Options> preprocessCode(String src, Options options) {
@@ -137,6 +287,25 @@ public abstract class AbstractJsGraphvizEngine extends AbstractGraphvizEngine {
                 + "      .then(function(res) { result(res); })"
                 + "      .catch(function(err) { initViz(true); error(err.toString()); });"
                 + "  } catch(e) { error(e.toString()); }"
+                + "}"
+                + "function renderAll(srcs, options, memory){"
+                + "  var sources = srcs.split('\\u001e'), results = [];"
+                + "  function next(i){"
+                + "    if (i === sources.length) { result(results.join('\\u001e')); return; }"
+                + "    if (memory[i]) { totalMemory = memory[i]; }"
+                + "    initViz().renderString(sources[i], options[i])"
+                + "      .then(function(res) { results.push(res); next(i + 1); })"
+                + "      .catch(function(err) { initViz(true); error(err.toString()); });"
+                + "  }"
+                + "  try { next(0); } catch(e) { error(e.toString()); }"
+                + "}"
+                //called with string values, the options are small javascript literals
+                + "function renderValues(src, options, memory){"
+                + "  if (memory) { totalMemory = +memory; }"
+                + "  render(src, eval('(' + options + ')'));"
+                + "}"
+                + "function renderAllValues(srcs, options, memory){"
+                + "  renderAll(srcs, eval('(' + options + ')'), eval('(' + memory + ')'));"
                 + "}";
     }
 }
@@ -0,0 +1,79 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.Map.Entry;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Renders multiple graphs with one call to the engine for each rasterizer.
+ */
+final class BatchRenderer {
+    private BatchRenderer() {
+    }
+
+    static Stream<Renderer> renderAll(Collection<Graphviz> graphvizs, Format format, @Nullable RenderCache c,
+                                      Supplier<GraphvizEngine> engine) {
+        final List<Graphviz> gs = graphvizs.stream().map(g -> g.withFormat(format)).collect(toList());
+        final EngineResult[] results = new EngineResult[gs.size()];
+        final String[] processed = new String[gs.size()];
+        final List<Integer> toRender = new ArrayList<>();
+        for (int i = 0; i < gs.size(); i++) {
+            final Graphviz g = gs.get(i);
+            if (format == Format.DOT) {
+                results[i] = format.postProcess(g, EngineResult.fromString(g.src));
+            } else {
+                processed[i] = format.preProcess(g.src);
+                results[i] = ResultCache.get(c, engine.get(), g, processed[i], g.rasterizer);
+                if (results[i] == null) {
+                    toRender.add(i);
+                }
+            }
+        }
+        final Map<Optional<Rasterizer>, List<Integer>> groups = toRender.stream()
+                .collect(groupingBy(i -> Optional.ofNullable(gs.get(i).rasterizer), LinkedHashMap::new, toList()));
+        for (final Entry<Optional<Rasterizer>, List<Integer>> group : groups.entrySet()) {
+            renderGroup(c, engine, group.getKey().orElse(null), group.getValue(), gs, processed, results);
+        }
+        return IntStream.range(0, gs.size()).mapToObj(i ->
+                new Renderer(gs.get(i), null, format, gs.get(i).applyFilters(results[i])));
+    }
+
+    private static void renderGroup(@Nullable RenderCache c, Supplier<GraphvizEngine> engine,
+                                    @Nullable Rasterizer rasterizer, List<Integer> indices,
+                                    List<Graphviz> gs, String[] processed, EngineResult[] results) {
+        final List<String> srcs = new ArrayList<>();
+        final List<Options> opts = new ArrayList<>();
+        for (final int index : indices) {
+            srcs.add(processed[index]);
+            opts.add(gs.get(index).options);
+        }
+        final GraphvizEngine e = engine.get();
+        final List<EngineResult> rendered = e.executeAll(srcs, opts, rasterizer);
+        for (int i = 0; i < indices.size(); i++) {
+            final Graphviz g = gs.get(indices.get(i));
+            results[indices.get(i)] = ResultCache.put(c, e, g, srcs.get(i), rasterizer,
+                    g.options.format.postProcess(g, rendered.get(i)));
+        }
+    }
+}
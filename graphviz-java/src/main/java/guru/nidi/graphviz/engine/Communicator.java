@@ -15,61 +15,271 @@
  */
 package guru.nidi.graphviz.engine;
 
+import javax.annotation.Nullable;
 import java.io.*;
 import java.net.Socket;
+import java.util.zip.*;
 
 import static guru.nidi.graphviz.engine.IoUtils.closeQuietly;
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+/**
+ * Send messages over a socket.
+ * In text mode, lengths and status are sent as lines and content as chars.
+ * In binary mode, lengths are 4 byte integers and content is UTF-8 encoded,
+ * and deflated if it's bigger than the compression threshold (by default {@link #COMPRESSION_THRESHOLD} bytes).
+ */
 class Communicator implements Closeable {
+    static final int COMPRESSION_THRESHOLD = 1 << 20;
+    static final int MAX_READ_BUFFER = 1 << 20;
+    private static final int COMPRESSED = 1;
+
     private final Socket socket;
+    private final boolean binary;
+    //only the streams of the chosen mode are created, buffers of the other mode would steal its bytes
+    @Nullable
     private final BufferedReader in;
+    @Nullable
     private final BufferedWriter out;
+    @Nullable
+    private final DataInputStream binIn;
+    @Nullable
+    private final DataOutputStream binOut;
+    private final Object writeLock = new Object();
+    private final int compressionThreshold;
+    private byte[] buffer = new byte[8192];
 
     public Communicator(Socket socket, int timeout) throws IOException {
+        this(socket, timeout, false);
+    }
+
+    public Communicator(Socket socket, int timeout, boolean binary) throws IOException {
+        this(socket, timeout, binary, COMPRESSION_THRESHOLD);
+    }
+
+    public Communicator(Socket socket, int timeout, boolean binary, int compressionThreshold) throws IOException {
         socket.setSoTimeout(timeout);
         this.socket = socket;
-        this.in = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8));
-        this.out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), UTF_8));
+        this.binary = binary;
+        this.compressionThreshold = compressionThreshold;
+        if (binary) {
+            in = null;
+            out = null;
+            binIn = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            binOut = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        } else {
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8));
+            out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), UTF_8));
+            binIn = null;
+            binOut = null;
+        }
+    }
+
+    private BufferedReader in() {
+        return mode(in);
+    }
+
+    private BufferedWriter out() {
+        return mode(out);
+    }
+
+    private DataInputStream binIn() {
+        return mode(binIn);
+    }
+
+    private DataOutputStream binOut() {
+        return mode(binOut);
+    }
+
+    private <T> T mode(@Nullable T stream) {
+        if (stream == null) {
+            throw new IllegalStateException("Communicator is not in " + (binary ? "text" : "binary") + " mode.");
+        }
+        return stream;
     }
 
     public int readLen() throws IOException {
-        final String line = in.readLine();
+        if (binary) {
+            try {
+                return binIn().readInt();
+            } catch (EOFException e) {
+                return 0;
+            }
+        }
+        final String line = in().readLine();
         return line == null ? 0 : Integer.parseInt(line);
     }
 
     public String readStatus() throws IOException {
-        return in.readLine();
+        return binary ? binIn().readUTF() : in().readLine();
     }
 
     public String readContent(int len) throws IOException {
+        return binary ? readBinaryContent(len) : readTextContent(len);
+    }
+
+    private String readTextContent(int len) throws IOException {
         final char[] buf = new char[len];
-        in.read(buf);
+        int total = 0;
+        while (total < len) {
+            final int read = in().read(buf, total, len - total);
+            if (read < 0) {
+                throw new EOFException("Expected " + len + " chars, but got only " + total);
+            }
+            total += read;
+        }
         return new String(buf);
     }
 
+    private String readBinaryContent(int len) throws IOException {
+        final int flags = binIn().readByte();
+        if ((flags & COMPRESSED) == 0) {
+            return new String(readFully(len), 0, len, UTF_8);
+        }
+        final int rawLen = binIn().readInt();
+        final byte[] buf = readFully(len);
+        final byte[] raw = new byte[rawLen];
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(buf, 0, len);
+            int total = 0;
+            while (total < rawLen && !inflater.finished()) {
+                total += inflater.inflate(raw, total, rawLen - total);
+            }
+            if (total < rawLen) {
+                throw new EOFException("Expected " + rawLen + " bytes, but got only " + total);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt compressed content", e);
+        } finally {
+            inflater.end();
+        }
+        return new String(raw, UTF_8);
+    }
+
+    //the read buffer is reused, there is only one thread reading from a communicator.
+    //content bigger than MAX_READ_BUFFER gets its own array, so one big message does not stay allocated.
+    private byte[] readFully(int len) throws IOException {
+        final byte[] buf;
+        if (len > MAX_READ_BUFFER) {
+            buf = new byte[len];
+        } else {
+            if (buffer.length < len) {
+                buffer = new byte[Math.min(MAX_READ_BUFFER, Math.max(len, buffer.length * 2))];
+            }
+            buf = buffer;
+        }
+        binIn().readFully(buf, 0, len);
+        return buf;
+    }
+
+    /**
+     * Read a request or response tagged with its id.
+     *
+     * @param withStatus if the message contains a status (i.e. it's a response)
+     * @return the message, its id is 0 if the connection was closed by the other side
+     */
+    public Message readMessage(boolean withStatus) throws IOException {
+        final int id = readLen();
+        if (id <= 0) {
+            return new Message(id, "", "");
+        }
+        final String status = withStatus ? readStatus() : "";
+        final String content = readContent(readLen());
+        if (!binary) {
+            in().readLine();
+        }
+        return new Message(id, status, content);
+    }
+
+    public void writeMessage(int id, String status, String content) throws IOException {
+        synchronized (writeLock) {
+            if (binary) {
+                binOut().writeInt(id);
+            } else {
+                out().write(Integer.toString(id));
+                out().newLine();
+            }
+            if (status.length() > 0) {
+                writeStatus(status);
+            }
+            writeContent(content);
+        }
+    }
+
     public void writeStatus(String status) throws IOException {
-        out.write(status);
-        out.newLine();
+        if (binary) {
+            binOut().writeUTF(status);
+        } else {
+            out().write(status);
+            out().newLine();
+        }
     }
 
     public void writeLen(int len) throws IOException {
-        out.write(Integer.toString(len));
-        out.newLine();
-        out.flush();
+        if (binary) {
+            binOut().writeInt(len);
+            binOut().flush();
+        } else {
+            out().write(Integer.toString(len));
+            out().newLine();
+            out().flush();
+        }
     }
 
     public void writeContent(String content) throws IOException {
-        writeLen(content.length());
-        out.write(content);
-        out.newLine();
-        out.flush();
+        if (binary) {
+            writeBinaryContent(content.getBytes(UTF_8));
+        } else {
+            writeLen(content.length());
+            out().write(content);
+            out().newLine();
+            out().flush();
+        }
+    }
+
+    private void writeBinaryContent(byte[] raw) throws IOException {
+        if (raw.length <= compressionThreshold) {
+            binOut().writeInt(raw.length);
+            binOut().writeByte(0);
+            binOut().write(raw);
+        } else {
+            final ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 4);
+            final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try (final DeflaterOutputStream def = new DeflaterOutputStream(compressed, deflater)) {
+                def.write(raw);
+            } finally {
+                deflater.end();
+            }
+            binOut().writeInt(compressed.size());
+            binOut().writeByte(COMPRESSED);
+            binOut().writeInt(raw.length);
+            compressed.writeTo(binOut());
+        }
+        binOut().flush();
+    }
+
+    static final class Message {
+        final int id;
+        final String status;
+        final String content;
+
+        Message(int id, String status, String content) {
+            this.id = id;
+            this.status = status;
+            this.content = content;
+        }
     }
 
     @Override
     public void close() {
-        closeQuietly(in);
-        closeQuietly(out);
+        if (binary) {
+            closeQuietly(binIn());
+            closeQuietly(binOut());
+        } else {
+            closeQuietly(in());
+            closeQuietly(out());
+        }
         closeQuietly(socket);
     }
 }
@@ -0,0 +1,101 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import guru.nidi.graphviz.service.CommandRunner;
+import guru.nidi.graphviz.service.SystemUtils;
+
+import javax.annotation.Nullable;
+import java.nio.file.Path;
+import java.util.*;
+
+import static java.util.Locale.ENGLISH;
+
+/**
+ * Builds the command lines for the graphviz executables found in a path.
+ */
+final class DotCommands {
+    private final String envPath;
+    private final Object lock = new Object();
+    private volatile Map<Engine, String> executables = new EnumMap<>(Engine.class);
+    private volatile int generation = -1;
+
+    DotCommands(String envPath) {
+        this.envPath = envPath;
+    }
+
+    /**
+     * Resolve the executables of all layout engines.
+     * They are resolved again only after CommandRunner.clearExecutableCache().
+     */
+    void resolve() {
+        synchronized (lock) {
+            final int current = CommandRunner.executableCacheGeneration();
+            final Map<Engine, String> resolved = new EnumMap<>(Engine.class);
+            for (final Engine engine : Engine.values()) {
+                final Optional<Path> path = CommandRunner.findExecutable(executableName(engine), envPath);
+                if (path.isPresent()) {
+                    resolved.put(engine, path.get().toString());
+                }
+            }
+            executables = resolved;
+            generation = current;
+        }
+    }
+
+    List<String> command(Options options, @Nullable Rasterizer rasterizer) {
+        final List<String> command = new ArrayList<>();
+        command.add(executable(options.engine));
+        if (options.yInvert != null && options.yInvert) {
+            command.add("-y");
+        }
+        command.add("-T" + formatName(options.format, rasterizer));
+        return command;
+    }
+
+    String executable(@Nullable Engine engine) {
+        if (generation != CommandRunner.executableCacheGeneration()) {
+            resolve();
+        }
+        final Engine layout = engine == null ? Engine.DOT : engine;
+        final String exe = executables.get(layout);
+        if (exe == null) {
+            final GraphvizException e = new GraphvizException(executableName(layout) + " command not found");
+            e.setStackTrace(new StackTraceElement[0]);
+            throw e;
+        }
+        return exe;
+    }
+
+    private static String executableName(Engine engine) {
+        return SystemUtils.executableName(engine.toString().toLowerCase(ENGLISH));
+    }
+
+    static String formatName(@Nullable Format format, @Nullable Rasterizer rasterizer) {
+        if (rasterizer instanceof BuiltInRasterizer) {
+            final BuiltInRasterizer natRast = (BuiltInRasterizer) rasterizer;
+            String f = natRast.format;
+            if (natRast.renderer != null) {
+                f += ":" + natRast.renderer;
+            }
+            if (natRast.formatter != null) {
+                f += ":" + natRast.formatter;
+            }
+            return f;
+        }
+        return format == null ? "svg" : format.vizName;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+/**
+ * Checks if a graph source is terminated, so dot does not wait for more input after it.
+ */
+final class DotInput {
+    private DotInput() {
+    }
+
+    /**
+     * Check if the source ends with a closed graph, outside of any string or comment.
+     * Only then dot starts to read the marker as a new graph.
+     */
+    static boolean complete(String src) {
+        int depth = 0;
+        boolean closed = false;
+        int i = 0;
+        while (i < src.length()) {
+            final int next = skip(src, i);
+            if (next < 0) {
+                return false;
+            }
+            final char c = src.charAt(i);
+            if (c == '{') {
+                depth++;
+            } else if (c == '}') {
+                depth--;
+            }
+            if (!isComment(src, i) && !Character.isWhitespace(c)) {
+                closed = c == '}' && depth == 0;
+            }
+            i = next;
+        }
+        return closed;
+    }
+
+    //the index after the string or comment starting at i, or -1 if it is not terminated
+    private static int skip(String src, int i) {
+        final char c = src.charAt(i);
+        if (c == '"') {
+            return endOfString(src, i + 1);
+        }
+        if (c == '<') {
+            return endOfHtml(src, i + 1);
+        }
+        if (src.startsWith("/*", i)) {
+            final int end = src.indexOf("*/", i + 2);
+            return end < 0 ? -1 : end + 2;
+        }
+        if (isComment(src, i)) {
+            final int end = src.indexOf('\n', i);
+            return end < 0 ? src.length() : end;
+        }
+        return i + 1;
+    }
+
+    private static boolean isComment(String src, int i) {
+        return src.startsWith("/*", i) || src.startsWith("//", i)
+                || (src.charAt(i) == '#' && (i == 0 || src.charAt(i - 1) == '\n'));
+    }
+
+    private static int endOfString(String src, int start) {
+        for (int i = start; i < src.length(); i++) {
+            if (src.charAt(i) == '\\') {
+                i++;
+            } else if (src.charAt(i) == '"') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static int endOfHtml(String src, int start) {
+        int depth = 1;
+        for (int i = start; i < src.length(); i++) {
+            if (src.charAt(i) == '<') {
+                depth++;
+            } else if (src.charAt(i) == '>') {
+                depth--;
+                if (depth == 0) {
+                    return i + 1;
+                }
+            }
+        }
+        return -1;
+    }
+}
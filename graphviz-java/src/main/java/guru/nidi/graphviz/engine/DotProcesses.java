@@ -0,0 +1,288 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Long running graphviz processes that read graphs from stdin and write the results to stdout.
+ * After each graph, a marker graph is sent. The output of the marker graph is known,
+ * so the output of a graph ends where the output of the marker begins.
+ * This relies on dot reading its input line by line and flushing the output after each graph.
+ * Unterminated input (e.g. an open string or brace) would swallow the marker,
+ * so such a graph is rendered by a new process whose stdin is closed after the graph and dot reports the error.
+ * There are at most a fixed number of processes per command line.
+ */
+final class DotProcesses implements AutoCloseable {
+    static final Logger LOG = LoggerFactory.getLogger(DotProcesses.class);
+    static final int MAX_ERROR_LENGTH = 8192;
+    static final ScheduledExecutorService TIMEOUTS = Executors.newSingleThreadScheduledExecutor(r -> {
+        final Thread thread = new Thread(r, "DotProcesses timeout");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    final int maxProcesses;
+    final byte[] markerSrc;
+    private final Map<List<String>, Pool> pools = new ConcurrentHashMap<>();
+    volatile boolean closed;
+
+    DotProcesses(int maxProcesses) {
+        this.maxProcesses = maxProcesses;
+        markerSrc = ("\ndigraph graphviz_java_end_" + UUID.randomUUID().toString().replace("-", "") + " {}\n")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    ByteBuffer execute(List<String> command, String src, int timeout) throws IOException, InterruptedException {
+        if (closed) {
+            throw new GraphvizException("Graphviz processes are already closed.");
+        }
+        final byte[] input = src.getBytes(StandardCharsets.UTF_8);
+        if (!DotInput.complete(src)) {
+            return ByteBuffer.wrap(run(command, input, timeout));
+        }
+        return pools.computeIfAbsent(command, Pool::new).execute(input, timeout);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        pools.values().forEach(Pool::close);
+        pools.clear();
+    }
+
+    /**
+     * Run the command once, feeding the input to its stdin.
+     *
+     * @return everything the command wrote to stdout
+     */
+    static byte[] run(List<String> command, byte[] input, int timeout) throws IOException, InterruptedException {
+        final Process process = new ProcessBuilder(command).start();
+        final ErrorReader errors = new ErrorReader(process);
+        final ScheduledFuture<?> kill = TIMEOUTS.schedule(process::destroyForcibly, timeout, MILLISECONDS);
+        try (final OutputStream in = process.getOutputStream();
+             final InputStream out = process.getInputStream()) {
+            in.write(input);
+            in.close();
+            final byte[] output = IoUtils.readAllBytes(out);
+            if (process.waitFor() == 0) {
+                return output;
+            }
+            throw new GraphvizException("Could not execute " + String.join(" ", command) + ": " + errors.await());
+        } catch (IOException e) {
+            throw new GraphvizException("Could not execute " + String.join(" ", command) + ": " + errors.await(), e);
+        } finally {
+            kill.cancel(false);
+        }
+    }
+
+    final class Pool {
+        final List<String> command;
+        final BlockingQueue<DotProcess> idle = new LinkedBlockingQueue<>();
+        final Semaphore permits = new Semaphore(maxProcesses, true);
+        volatile byte[] marker;
+
+        Pool(List<String> command) {
+            this.command = command;
+        }
+
+        ByteBuffer execute(byte[] src, int timeout) throws IOException, InterruptedException {
+            final DotProcess process = acquire(timeout);
+            boolean ok = false;
+            try {
+                final ByteBuffer res = process.execute(src, marker(timeout), timeout);
+                ok = true;
+                return res;
+            } finally {
+                release(process, ok);
+            }
+        }
+
+        //the output of the marker, rendered by a separate process
+        byte[] marker(int timeout) throws IOException, InterruptedException {
+            final byte[] known = marker;
+            if (known != null) {
+                return known;
+            }
+            final byte[] output = run(command, markerSrc, timeout);
+            if (output.length == 0) {
+                throw new GraphvizException("Graphviz produced no output for " + String.join(" ", command));
+            }
+            marker = output;
+            return output;
+        }
+
+        //a permit is held for each process in use, so a failed process frees its slot for waiting threads
+        DotProcess acquire(int timeout) throws IOException, InterruptedException {
+            if (!permits.tryAcquire(timeout, MILLISECONDS)) {
+                throw new GraphvizException("No graphviz process available within " + timeout + " ms.");
+            }
+            final DotProcess process = idle.poll();
+            if (process != null) {
+                return process;
+            }
+            try {
+                return new DotProcess(command);
+            } catch (IOException e) {
+                permits.release();
+                throw e;
+            }
+        }
+
+        void release(DotProcess process, boolean ok) {
+            if (ok && !closed) {
+                idle.add(process);
+            } else {
+                process.close();
+            }
+            permits.release();
+        }
+
+        void close() {
+            DotProcess process;
+            while ((process = idle.poll()) != null) {
+                process.close();
+            }
+        }
+    }
+
+    final class DotProcess {
+        final Process process;
+        final OutputStream in;
+        final InputStream out;
+        final ErrorReader errors;
+
+        DotProcess(List<String> command) throws IOException {
+            LOG.debug("Starting graphviz process {}", command);
+            process = new ProcessBuilder(command).start();
+            in = process.getOutputStream();
+            out = process.getInputStream();
+            errors = new ErrorReader(process);
+        }
+
+        ByteBuffer execute(byte[] src, byte[] marker, int timeout) throws IOException {
+            errors.clear();
+            final ScheduledFuture<?> kill = TIMEOUTS.schedule(process::destroyForcibly, timeout, MILLISECONDS);
+            try {
+                in.write(src);
+                in.write(markerSrc);
+                in.flush();
+                final OutputBuffer res = new OutputBuffer();
+                final byte[] buf = new byte[8192];
+                while (!res.endsWith(marker)) {
+                    final int read = out.read(buf);
+                    if (read < 0) {
+                        throw new GraphvizException("Graphviz process ended unexpectedly: " + errors);
+                    }
+                    res.write(buf, 0, read);
+                }
+                if (res.size() == marker.length) {
+                    throw new GraphvizException("Graphviz produced no output: " + errors);
+                }
+                return res.withoutEnd(marker.length);
+            } catch (IOException e) {
+                throw new GraphvizException("Problem communicating with graphviz process: " + errors, e);
+            } finally {
+                kill.cancel(false);
+            }
+        }
+
+        void close() {
+            IoUtils.closeQuietly(in);
+            process.destroy();
+        }
+    }
+
+    //collects the last part of stderr of a process
+    static final class ErrorReader {
+        final StringBuilder errors = new StringBuilder();
+        final Thread thread;
+
+        ErrorReader(Process process) {
+            thread = new Thread(() -> read(process.getErrorStream()), "DotProcesses error reader");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void read(InputStream stream) {
+            try (final Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8)) {
+                final char[] buf = new char[1024];
+                int read;
+                while ((read = reader.read(buf)) >= 0) {
+                    synchronized (errors) {
+                        errors.append(buf, 0, read);
+                        if (errors.length() > MAX_ERROR_LENGTH) {
+                            errors.delete(0, errors.length() - MAX_ERROR_LENGTH);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                //process ended
+            }
+        }
+
+        void clear() {
+            synchronized (errors) {
+                errors.setLength(0);
+            }
+        }
+
+        //the errors after the process has ended
+        String await() throws InterruptedException {
+            thread.join(1000);
+            return toString();
+        }
+
+        @Override
+        public String toString() {
+            synchronized (errors) {
+                return errors.toString().trim();
+            }
+        }
+    }
+
+    static final class OutputBuffer extends ByteArrayOutputStream {
+        OutputBuffer() {
+            super(8192);
+        }
+
+        boolean endsWith(byte[] end) {
+            if (count < end.length) {
+                return false;
+            }
+            for (int i = 0; i < end.length; i++) {
+                if (buf[count - end.length + i] != end[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        //the content without the end, sharing the buffer
+        ByteBuffer withoutEnd(int length) {
+            return ByteBuffer.wrap(buf, 0, count - length);
+        }
+    }
+}
@@ -18,54 +18,145 @@ package guru.nidi.graphviz.engine;
 import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.util.Objects;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 public final class EngineResult {
     @Nullable
     private final File file;
     @Nullable
     private final String string;
+    @Nullable
+    private final ByteBuffer bytes;
+    private final boolean text;
 
-    private EngineResult(@Nullable File file, @Nullable String string) {
+    private EngineResult(@Nullable File file, @Nullable String string, @Nullable ByteBuffer bytes, boolean text) {
         this.file = file;
         this.string = string;
+        this.bytes = bytes;
+        this.text = text;
     }
 
     public static EngineResult fromFile(File file) {
-        return new EngineResult(file, null);
+        return new EngineResult(file, null, null, false);
     }
 
     public static EngineResult fromString(String string) {
-        return new EngineResult(null, string);
+        return new EngineResult(null, string, null, true);
+    }
+
+    /**
+     * A binary result held in memory, e.g. an image rendered by the built-in rasterizer.
+     * Consumers that only handle files get the bytes written to a temporary file.
+     */
+    public static EngineResult fromBytes(byte[] bytes) {
+        return fromBytes(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * A binary result consisting of the remaining bytes of the buffer.
+     */
+    public static EngineResult fromBytes(ByteBuffer bytes) {
+        return new EngineResult(null, null, bytes.slice(), false);
+    }
+
+    /**
+     * A UTF-8 encoded text result consisting of the remaining bytes of the buffer.
+     * It is only decoded if a consumer needs a String.
+     */
+    public static EngineResult fromUtf8(ByteBuffer bytes) {
+        return new EngineResult(null, null, bytes.slice(), true);
     }
 
+    /**
+     * Map a text result. UTF-8 encoded results are decoded before and become String results.
+     */
     public EngineResult mapString(Function<String, String> mapper) {
-        return string == null ? this : fromString(mapper.apply(string));
+        return text ? fromString(mapper.apply(asString())) : this;
     }
 
-    public void consume(Consumer<File> fileConsumer, Consumer<String> stringConsumer) {
-        if (string == null) {
-            fileConsumer.accept(file);
-        } else {
-            stringConsumer.accept(string);
+    /**
+     * Map a text result, leaving UTF-8 encoded results encoded.
+     * The buffer given to the UTF-8 mapper is read-only.
+     */
+    public EngineResult mapText(Function<String, String> mapper, Function<ByteBuffer, ByteBuffer> utf8Mapper) {
+        if (!text) {
+            return this;
         }
-        close();
+        return bytes == null
+                ? fromString(mapper.apply(asString()))
+                : fromUtf8(utf8Mapper.apply(bytes.asReadOnlyBuffer()));
+    }
+
+    public void consume(Consumer<File> fileConsumer, Consumer<String> stringConsumer) {
+        map(file -> accept(fileConsumer, file), string -> accept(stringConsumer, string));
     }
 
     public <T> T map(Function<File, T> fileMapper, Function<String, T> stringMapper) {
-        final T res = string == null ? fileMapper.apply(file) : stringMapper.apply(string);
-        close();
-        return res;
+        return map(fileMapper, bytes -> withTempFile(bytes, fileMapper), stringMapper);
     }
 
-    <T> T mapIO(IOFunction<File, T> fileMapper, IOFunction<String, T> stringMapper) throws IOException {
-        final T res = string == null ? fileMapper.apply(file) : stringMapper.apply(string);
+    /**
+     * Map the result. UTF-8 encoded text results are decoded for the string mapper.
+     * The buffer given to the bytes mapper is read-only, it may be shared with the render cache.
+     */
+    public <T> T map(Function<File, T> fileMapper, Function<ByteBuffer, T> bytesMapper,
+                     Function<String, T> stringMapper) {
+        try {
+            return mapIO(fileMapper::apply, bytesMapper::apply, b -> stringMapper.apply(UTF_8.decode(b).toString()),
+                    stringMapper::apply);
+        } catch (IOException e) {
+            throw new AssertionError("Mapper threw an unexpected IOException", e);
+        }
+    }
+
+    <T> T mapIO(IOFunction<File, T> fileMapper, IOFunction<ByteBuffer, T> bytesMapper,
+                IOFunction<ByteBuffer, T> utf8Mapper, IOFunction<String, T> stringMapper) throws IOException {
+        final T res;
+        if (bytes == null) {
+            res = string == null ? fileMapper.apply(file) : stringMapper.apply(string);
+        } else {
+            final ByteBuffer readOnly = bytes.asReadOnlyBuffer();
+            res = text ? utf8Mapper.apply(readOnly) : bytesMapper.apply(readOnly);
+        }
         close();
         return res;
     }
 
+    private String asString() {
+        return bytes == null ? Objects.requireNonNull(string) : UTF_8.decode(bytes.duplicate()).toString();
+    }
+
+    @Nullable
+    private static <T> Void accept(Consumer<T> consumer, T value) {
+        consumer.accept(value);
+        return null;
+    }
+
+    private static <T> T withTempFile(ByteBuffer bytes, Function<File, T> mapper) {
+        final File temp = toTempFile(bytes);
+        try {
+            return mapper.apply(temp);
+        } finally {
+            temp.delete();
+        }
+    }
+
+    private static File toTempFile(ByteBuffer bytes) {
+        try {
+            final File temp = File.createTempFile("graphviz", ".bin");
+            Files.write(temp.toPath(), IoUtils.toArray(bytes));
+            return temp;
+        } catch (IOException e) {
+            throw new GraphvizException("Could not write result to temporary file", e);
+        }
+    }
+
     private void close() {
         if (file != null) {
             file.delete();
@@ -81,12 +172,13 @@ public final class EngineResult {
             return false;
         }
         final EngineResult that = (EngineResult) o;
-        return Objects.equals(file, that.file) && Objects.equals(string, that.string);
+        return text == that.text && Objects.equals(file, that.file) && Objects.equals(string, that.string)
+                && Objects.equals(bytes, that.bytes);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(file, string);
+        return Objects.hash(file, string, bytes, text);
     }
 
     @Override
@@ -94,6 +186,7 @@ public final class EngineResult {
         return "EngineResult{"
                 + "file=" + file
                 + ", string='" + string + '\''
+                + (bytes == null ? "" : ", bytes=" + bytes.remaining() + (text ? " (UTF-8)" : ""))
                 + '}';
     }
 }
@@ -0,0 +1,128 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * The engine used by {@link Graphviz}, the first one of a list that could be initialized.
+ */
+final class Engines {
+    @Nullable
+    private static volatile BlockingQueue<GraphvizEngine> engineQueue;
+    @Nullable
+    private static volatile GraphvizEngine engine;
+
+    private Engines() {
+    }
+
+    static void useDefault() {
+        use(Arrays.asList(new GraphvizCmdLineEngine(), new GraphvizV8Engine(),
+                new GraphvizServerEngine(), new GraphvizJdkEngine()));
+    }
+
+    static void use(List<GraphvizEngine> engines) {
+        if (engines.isEmpty()) {
+            useDefault();
+        } else {
+            synchronized (Engines.class) {
+                if (engineQueue == null) {
+                    engineQueue = new ArrayBlockingQueue<>(1);
+                } else {
+                    try {
+                        get().close();
+                    } catch (Exception e) {
+                        //ignore
+                    }
+                }
+            }
+            engine = null;
+            doUse(engines);
+        }
+    }
+
+    private static void doUse(List<GraphvizEngine> engines) {
+        if (engines.isEmpty()) {
+            engineQueue.add(new ErrorGraphvizEngine());
+        } else {
+            engines.get(0).init(e -> engineQueue.add(e), e -> doUse(engines.subList(1, engines.size())));
+        }
+    }
+
+    static GraphvizEngine get() {
+        if (engineQueue == null) {
+            useDefault();
+        }
+        synchronized (Engines.class) {
+            if (engine == null) {
+                try {
+                    engine = engineQueue.poll(120, TimeUnit.SECONDS);
+                    if (engine == null) {
+                        throw new GraphvizException("Initializing graphviz engine took too long.");
+                    }
+                    if (engine instanceof ErrorGraphvizEngine) {
+                        throw new GraphvizException("None of the provided engines could be initialized.");
+                    }
+                } catch (InterruptedException e) {
+                    //ignore
+                }
+            }
+        }
+        return engine;
+    }
+
+    static void release() {
+        synchronized (Engines.class) {
+            if (engine != null) {
+                doRelease(engine);
+            }
+            if (engineQueue != null) {
+                for (final GraphvizEngine engine : engineQueue) {
+                    doRelease(engine);
+                }
+            }
+        }
+        engine = null;
+        engineQueue = null;
+    }
+
+    private static void doRelease(GraphvizEngine engine) {
+        try {
+            engine.close();
+        } catch (Exception e) {
+            throw new GraphvizException("Problem closing engine", e);
+        }
+    }
+
+    private static class ErrorGraphvizEngine implements GraphvizEngine {
+        @Override
+        public void init(Consumer<GraphvizEngine> onOk, Consumer<GraphvizEngine> onError) {
+        }
+
+        @Override
+        public EngineResult execute(String src, Options options, @Nullable Rasterizer rasterizer) {
+            return EngineResult.fromString("");
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
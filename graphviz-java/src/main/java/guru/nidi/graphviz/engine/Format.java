@@ -15,12 +15,6 @@
  */
 package guru.nidi.graphviz.engine;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 public enum Format {
     PNG("svg", "png", true, true) {
         @Override
@@ -30,7 +24,7 @@ public enum Format {
 
         @Override
         EngineResult postProcess(Graphviz graphviz, EngineResult result) {
-            return result.mapString(s -> postProcessSvg(graphviz.processOptions, s, true));
+            return SvgPostProcessor.process(graphviz.processOptions, result, true);
         }
     },
 
@@ -42,7 +36,7 @@ public enum Format {
 
         @Override
         EngineResult postProcess(Graphviz graphviz, EngineResult result) {
-            return result.mapString(s -> postProcessSvg(graphviz.processOptions, s, true));
+            return SvgPostProcessor.process(graphviz.processOptions, result, true);
         }
     },
 
@@ -54,7 +48,7 @@ public enum Format {
 
         @Override
         EngineResult postProcess(Graphviz graphviz, EngineResult result) {
-            return result.mapString(s -> postProcessSvg(graphviz.processOptions, s, false));
+            return SvgPostProcessor.process(graphviz.processOptions, result, false);
         }
     },
     DOT("dot", "dot"),
@@ -68,12 +62,6 @@ public enum Format {
     CMAPX("cmapx", "cmapx"),
     JSON0("json0", "json");
 
-    private static final Logger LOG = LoggerFactory.getLogger(Format.class);
-    private static final Pattern FONT_PATTERN = Pattern.compile("font-size=\"(.*?)\"");
-    private static final Pattern SVG_PATTERN = Pattern.compile(
-            "<svg width=\"(?<width>\\d+)(?<unit>p[tx])\" height=\"(?<height>\\d+)p[tx]\""
-                    + "(?<between>.*?>\\R<g.*?)transform=\"scale\\((?<scaleX>[0-9.]+) (?<scaleY>[0-9.]+)\\)",
-            Pattern.DOTALL);
 
     final String vizName;
     public final String fileExtension;
@@ -100,76 +88,27 @@ public enum Format {
     }
 
     private static String replaceSubSpaces(String src) {
+        int i = 0;
+        while (i < src.length() && !isSubSpace(src.charAt(i))) {
+            i++;
+        }
+        if (i == src.length()) {
+            return src;
+        }
         final char[] chars = src.toCharArray();
-        for (int i = 0; i < chars.length; i++) {
-            if (chars[i] < ' ' && chars[i] != '\t' && chars[i] != '\r' && chars[i] != '\n') {
+        for (; i < chars.length; i++) {
+            if (isSubSpace(chars[i])) {
                 chars[i] = ' ';
             }
         }
         return new String(chars);
     }
 
-    private static String encodeXml(String src) {
-        return src.replace("&", "&amp;");
-    }
-
-    private static String postProcessSvg(ProcessOptions options, String result, boolean prefix) {
-        final String unprefixed = prefix ? withoutPrefix(result) : result;
-        final String pixelSized = pointsToPixels(unprefixed, options.dpi,
-                options.width, options.height, options.scale);
-        return options.fontAdjust == 1 ? pixelSized : fontAdjusted(pixelSized, options.fontAdjust);
-    }
-
-    private static String withoutPrefix(String svg) {
-        final int pos = svg.indexOf("<svg ");
-        return pos < 0 ? svg : svg.substring(pos);
-    }
-
-    private static String pointsToPixels(String svg, double dpi, int width, int height, double scale) {
-        final Matcher m = SVG_PATTERN.matcher(svg);
-        if (!m.find()) {
-            LOG.warn("Generated SVG has not the expected format. There might be image size problems.");
-            return svg;
-        }
-        return m.replaceFirst("<svg " + svgSize(m, width, height, scale) + m.group("between") + svgScale(m, dpi));
-    }
-
-    private static String svgSize(Matcher m, int width, int height, double scale) {
-        double w = Integer.parseInt(m.group("width"));
-        double h = Integer.parseInt(m.group("height"));
-        if (width > 0 && height > 0) {
-            w = width;
-            h = height;
-        } else if (width > 0) {
-            h *= width / w;
-            w = width;
-        } else if (height > 0) {
-            w *= height / h;
-            h = height;
-        }
-        return "width=\"" + Math.round(w * scale) + "px\" height=\"" + Math.round(h * scale) + "px\"";
+    private static boolean isSubSpace(char c) {
+        return c < ' ' && c != '\t' && c != '\r' && c != '\n';
     }
 
-    private static String svgScale(Matcher m, double dpi) {
-        final double pixelScale = m.group("unit").equals("px") ? 1 : Math.round(10000 * dpi / 72) / 10000d;
-        final double scaleX = Double.parseDouble(m.group("scaleX")) / pixelScale;
-        final double scaleY = Double.parseDouble(m.group("scaleY")) / pixelScale;
-        return "transform=\"scale(" + scaleX + " " + scaleY + ")";
-    }
-
-    private static String fontAdjusted(String svg, double fontAdjust) {
-        final Matcher m = FONT_PATTERN.matcher(svg);
-        final StringBuffer s = new StringBuffer();
-        while (m.find()) {
-            String rep;
-            try {
-                rep = "font-size=\"" + Double.parseDouble(m.group(1)) * fontAdjust + "\"";
-            } catch (NumberFormatException e) {
-                rep = m.group();
-            }
-            m.appendReplacement(s, rep);
-        }
-        m.appendTail(s);
-        return s.toString();
+    private static String encodeXml(String src) {
+        return src.replace("&", "&amp;");
     }
 }
@@ -17,10 +17,21 @@ package guru.nidi.graphviz.engine;
 
 import org.graalvm.polyglot.Context;
 import org.graalvm.polyglot.PolyglotException;
+import org.graalvm.polyglot.Source;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * All contexts share one polyglot engine, so library code that is loaded with {@link #executeLibrary(String)}
+ * is parsed and compiled only once and reused by all contexts.
+ * A context can be used by different threads, but not concurrently.
+ */
 class GraalJavascriptEngine extends AbstractJavascriptEngine {
+    private static final Map<String, Source> SOURCES = new ConcurrentHashMap<>();
+    private static final String PROBLEM = "Problem executing javascript";
     private final ResultHandler resultHandler = new ResultHandler();
-    private final Context context = Context.newBuilder("js").allowAllAccess(true).build();
+    private final Context context = Context.newBuilder("js").engine(SharedEngine.ENGINE).allowAllAccess(true).build();
 
     GraalJavascriptEngine() {
         context.getPolyglotBindings().putMember("handler", resultHandler);
@@ -28,17 +39,60 @@ class GraalJavascriptEngine extends AbstractJavascriptEngine {
                 + "function error(r){ Polyglot.import('handler').setError(r); }");
     }
 
+    @Override
+    public void executeJavascript(String raw) {
+        try {
+            eval(raw);
+        } catch (PolyglotException e) {
+            throw new GraphvizException(PROBLEM, e);
+        }
+    }
+
+    /**
+     * Load library code which the graphviz engines bring along, i.e. the same few sources for all contexts.
+     * The sources are kept for the lifetime of the JVM, so this must not be used for arbitrary code.
+     */
+    void executeLibrary(String code) {
+        final Source source = SOURCES.computeIfAbsent(code, c ->
+                Source.newBuilder("js", c, "library" + SOURCES.size() + ".js").cached(true).buildLiteral());
+        try {
+            context.eval(source);
+        } catch (PolyglotException e) {
+            throw new GraphvizException(PROBLEM, e);
+        }
+    }
+
     @Override
     protected String execute(String js) {
         try {
             eval(js);
             return resultHandler.waitFor();
         } catch (PolyglotException e) {
-            throw new GraphvizException("Problem executing javascript", e);
+            throw new GraphvizException(PROBLEM, e);
+        }
+    }
+
+    @Override
+    public String executeFunction(String function, String... args) {
+        try {
+            context.getBindings("js").getMember(function).executeVoid((Object[]) args);
+            return resultHandler.waitFor();
+        } catch (PolyglotException e) {
+            throw new GraphvizException(PROBLEM, e);
         }
     }
 
     private void eval(String code) {
         context.eval("js", code);
     }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+
+    //lazily created, so that graal is only required when this engine is used
+    private static final class SharedEngine {
+        static final org.graalvm.polyglot.Engine ENGINE = org.graalvm.polyglot.Engine.create();
+    }
 }
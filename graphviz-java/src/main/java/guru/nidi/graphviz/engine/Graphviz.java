@@ -21,10 +21,9 @@ import guru.nidi.graphviz.model.MutableGraph;
 import javax.annotation.Nullable;
 import java.io.*;
 import java.util.*;
-import java.util.concurrent.*;
-import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 import static guru.nidi.graphviz.engine.IoUtils.readStream;
 
@@ -33,18 +32,16 @@ public final class Graphviz {
             Pattern.CASE_INSENSITIVE);
 
     @Nullable
-    private static volatile BlockingQueue<GraphvizEngine> engineQueue;
-    @Nullable
-    private static volatile GraphvizEngine engine;
+    private static volatile RenderCache cache;
 
     @Nullable
     private final MutableGraph graph;
-    private final String src;
+    final String src;
 
     @Nullable
     final Rasterizer rasterizer;
     final ProcessOptions processOptions;
-    private final Options options;
+    final Options options;
     private final List<GraphvizFilter> filters;
 
     private Graphviz(@Nullable MutableGraph graph, String src) {
@@ -62,8 +59,7 @@ public final class Graphviz {
     }
 
     public static void useDefaultEngines() {
-        useEngine(new GraphvizCmdLineEngine(), new GraphvizV8Engine(),
-                new GraphvizServerEngine(), new GraphvizJdkEngine());
+        Engines.useDefault();
     }
 
     public static void useEngine(GraphvizEngine first, GraphvizEngine... rest) {
@@ -74,76 +70,26 @@ public final class Graphviz {
     }
 
     public static void useEngine(List<GraphvizEngine> engines) {
-        if (engines.isEmpty()) {
-            useDefaultEngines();
-        } else {
-            synchronized (Graphviz.class) {
-                if (engineQueue == null) {
-                    engineQueue = new ArrayBlockingQueue<>(1);
-                } else {
-                    try {
-                        getEngine().close();
-                    } catch (Exception e) {
-                        //ignore
-                    }
-                }
-            }
-            engine = null;
-            doUseEngine(engines);
-        }
+        Engines.use(engines);
     }
 
-    private static void doUseEngine(List<GraphvizEngine> engines) {
-        if (engines.isEmpty()) {
-            engineQueue.add(new ErrorGraphvizEngine());
-        } else {
-            engines.get(0).init(e -> engineQueue.add(e), e -> doUseEngine(engines.subList(1, engines.size())));
-        }
-    }
-
-    private static GraphvizEngine getEngine() {
-        if (engineQueue == null) {
-            useDefaultEngines();
-        }
-        synchronized (Graphviz.class) {
-            if (engine == null) {
-                try {
-                    engine = engineQueue.poll(120, TimeUnit.SECONDS);
-                    if (engine == null) {
-                        throw new GraphvizException("Initializing graphviz engine took too long.");
-                    }
-                    if (engine instanceof ErrorGraphvizEngine) {
-                        throw new GraphvizException("None of the provided engines could be initialized.");
-                    }
-                } catch (InterruptedException e) {
-                    //ignore
-                }
-            }
-        }
-        return engine;
+    public static void releaseEngine() {
+        Engines.release();
     }
 
-    public static void releaseEngine() {
-        synchronized (Graphviz.class) {
-            if (engine != null) {
-                doReleaseEngine(engine);
-            }
-            if (engineQueue != null) {
-                for (final GraphvizEngine engine : engineQueue) {
-                    doReleaseEngine(engine);
-                }
-            }
-        }
-        engine = null;
-        engineQueue = null;
+    /**
+     * Use a cache for all renderings. Rendering a graph found in the cache does not need the engine.
+     * Rasterized images are cached as well, if they are created without a graphics configurer.
+     *
+     * @param cache the cache to use or null to disable caching
+     */
+    public static void useCache(@Nullable RenderCache cache) {
+        Graphviz.cache = cache;
     }
 
-    private static void doReleaseEngine(GraphvizEngine engine) {
-        try {
-            engine.close();
-        } catch (Exception e) {
-            throw new GraphvizException("Problem closing engine", e);
-        }
+    @Nullable
+    static RenderCache cache() {
+        return cache;
     }
 
     public static Graphviz fromFile(File src) throws IOException {
@@ -213,15 +159,43 @@ public final class Graphviz {
     }
 
     public Renderer render(Format format) {
-        final Graphviz g = new Graphviz(graph, src, rasterizer, processOptions, options.format(format), filters);
-        return new Renderer(g, null, format);
+        return new Renderer(withFormat(format), null, format);
+    }
+
+    /**
+     * Render multiple graphs with one call to the engine for each rasterizer.
+     * Graphs found in the render cache are not given to the engine.
+     *
+     * @param graphvizs the graphs to render
+     * @param format    the format to render into
+     * @return the renderers with the results, in the same order as the graphs
+     */
+    public static Stream<Renderer> renderAll(Collection<Graphviz> graphvizs, Format format) {
+        return BatchRenderer.renderAll(graphvizs, format, cache, Engines::get);
+    }
+
+    Graphviz withFormat(Format format) {
+        return new Graphviz(graph, src, rasterizer, processOptions, options.format(format), filters);
     }
 
     EngineResult execute() {
-        final EngineResult result = options.format == Format.DOT
-                ? EngineResult.fromString(src)
-                : getEngine().execute(options.format.preProcess(src), options, rasterizer);
-        EngineResult engineResult = options.format.postProcess(this, result);
+        if (options.format == Format.DOT) {
+            return applyFilters(options.format.postProcess(this, EngineResult.fromString(src)));
+        }
+        final RenderCache c = cache;
+        final GraphvizEngine engine = Engines.get();
+        final String processed = options.format.preProcess(src);
+        final EngineResult cached = ResultCache.get(c, engine, this, processed, rasterizer);
+        if (cached != null) {
+            return applyFilters(cached);
+        }
+        final EngineResult result = engine.execute(processed, options, rasterizer);
+        return applyFilters(ResultCache.put(c, engine, this, processed, rasterizer,
+                options.format.postProcess(this, result)));
+    }
+
+    EngineResult applyFilters(EngineResult result) {
+        EngineResult engineResult = result;
         for (final GraphvizFilter filter : filters) {
             engineResult = filter.filter(options.format, engineResult);
         }
@@ -236,19 +210,4 @@ public final class Graphviz {
         final Matcher matcher = DPI_PATTERN.matcher(src);
         return matcher.find() ? Double.parseDouble(matcher.group(1)) : 72;
     }
-
-    private static class ErrorGraphvizEngine implements GraphvizEngine {
-        @Override
-        public void init(Consumer<GraphvizEngine> onOk, Consumer<GraphvizEngine> onError) {
-        }
-
-        @Override
-        public EngineResult execute(String src, Options options, @Nullable Rasterizer rasterizer) {
-            return EngineResult.fromString("");
-        }
-
-        @Override
-        public void close() {
-        }
-    }
 }
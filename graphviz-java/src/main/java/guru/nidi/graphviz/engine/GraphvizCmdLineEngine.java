@@ -21,13 +21,16 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Optional;
+import java.util.*;
+import java.util.Map.Entry;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
 
-import static java.util.Locale.ENGLISH;
+import static java.util.stream.Collectors.toList;
 
 /**
  * Engine that tries to parse the dot file using the GraphvizEngine installed on the host.
@@ -36,24 +39,40 @@ import static java.util.Locale.ENGLISH;
  */
 public class GraphvizCmdLineEngine extends AbstractGraphvizEngine {
     private static final Logger LOG = LoggerFactory.getLogger(AbstractGraphvizEngine.class);
+    private static final int BATCH_SIZE = 100;
 
-    private final String envPath;
+    private final DotCommands commands;
     private final CommandRunner cmdRunner;
 
     @Nullable
     private String outputFilePath;
     @Nullable
     private String outputFileName;
+    @Nullable
+    private DotProcesses processes;
+    private boolean pipes;
 
     public GraphvizCmdLineEngine() {
         this(Optional.ofNullable(System.getenv("PATH")).orElse(""), new CommandLineExecutor());
     }
 
     public GraphvizCmdLineEngine(String envPath, CommandLineExecutor executor) {
+        this(envPath, executor, true);
+    }
+
+    /**
+     * Search the graphviz executables in the given path and run them with the given executor.
+     * Use a {@link DirectCommandLineExecutor} without shell wrapper to run graphviz without a shell.
+     *
+     * @param envPath      the path to search the graphviz executables in
+     * @param executor     the executor of the commands
+     * @param shellWrapper if the commands should be run by a shell (sh or cmd)
+     */
+    public GraphvizCmdLineEngine(String envPath, CommandLineExecutor executor, boolean shellWrapper) {
         super(true);
-        this.envPath = envPath;
+        commands = new DotCommands(envPath);
         cmdRunner = new CommandBuilder()
-                .withShellWrapper(true)
+                .withShellWrapper(shellWrapper)
                 .withCommandExecutor(executor)
                 .build();
     }
@@ -63,13 +82,54 @@ public class GraphvizCmdLineEngine extends AbstractGraphvizEngine {
         return super.timeout(amount, unit);
     }
 
+    /**
+     * Keep graphviz processes running and pipe the graphs through their stdin and stdout.
+     * This avoids starting a process and using temporary files for each graph.
+     * Up to the given number of processes are started for each combination of layout engine and format.
+     * Rendering with the built-in rasterizer or with a dot output file still uses a new process.
+     * A graph that fails (e.g. with a syntax error) or runs into the timeout ends its process,
+     * the next graph then starts a new one.
+     *
+     * @param count the maximum number of processes per command, 0 to start a new process for each graph (the default)
+     */
+    public GraphvizCmdLineEngine persistentProcesses(int count) {
+        if (processes != null) {
+            processes.close();
+        }
+        processes = count > 0 ? new DotProcesses(count) : null;
+        return this;
+    }
+
+    /**
+     * Pass the graph to stdin of the graphviz process and read the result from its stdout
+     * instead of using temporary files.
+     * Results of the built-in rasterizer are kept in memory.
+     * Has no effect if a dot output file is set.
+     */
+    public GraphvizCmdLineEngine pipes(boolean pipes) {
+        this.pipes = pipes;
+        return this;
+    }
+
     @Override
     protected void doInit() {
-        getEngineExecutable(Engine.DOT);
+        commands.resolve();
+        commands.executable(Engine.DOT);
+    }
+
+    @Override
+    public void close() {
+        if (processes != null) {
+            processes.close();
+        }
     }
 
     @Override
     public EngineResult execute(String src, Options options, @Nullable Rasterizer rasterizer) {
+        final DotProcesses procs = processesFor(rasterizer);
+        if (streamed(procs)) {
+            return executeStreamed(procs, src, options, rasterizer);
+        }
         try {
             final Path path = Files.createTempDirectory(getOrCreateTempDirectory().toPath(), "DotEngine");
             final File dotFile = getDotFile(path);
@@ -83,21 +143,108 @@ public class GraphvizCmdLineEngine extends AbstractGraphvizEngine {
         }
     }
 
+    /**
+     * Render all sources with as few executions of the command as possible.
+     * Sources with the same engine and yInvert option are processed by one command using the -O option.
+     * If graphs are streamed or a dot output file is set, they are rendered one by one.
+     * Results of the built-in rasterizer are kept in memory, so the temporary files can be deleted.
+     */
+    @Override
+    public List<EngineResult> executeAll(List<String> srcs, List<Options> options, @Nullable Rasterizer rasterizer) {
+        if (outputFileName != null || streamed(processesFor(rasterizer))) {
+            return IntStream.range(0, srcs.size())
+                    .mapToObj(i -> execute(srcs.get(i), options.get(i), rasterizer))
+                    .collect(toList());
+        }
+        final EngineResult[] results = new EngineResult[srcs.size()];
+        final Map<List<String>, List<Integer>> byCommand = new LinkedHashMap<>();
+        for (int i = 0; i < srcs.size(); i++) {
+            byCommand.computeIfAbsent(commands.command(options.get(i), rasterizer), k -> new ArrayList<>()).add(i);
+        }
+        try {
+            final Path path = Files.createTempDirectory(getOrCreateTempDirectory().toPath(), "DotEngine");
+            try {
+                for (final Entry<List<String>, List<Integer>> group : byCommand.entrySet()) {
+                    final List<Integer> indices = group.getValue();
+                    for (int start = 0; start < indices.size(); start += BATCH_SIZE) {
+                        final List<Integer> batch =
+                                indices.subList(start, Math.min(indices.size(), start + BATCH_SIZE));
+                        executeBatch(path, group.getKey(), batch, srcs, options, rasterizer, results);
+                    }
+                }
+            } finally {
+                IoUtils.deleteDirectory(path.toFile());
+            }
+            return Arrays.asList(results);
+        } catch (IOException | InterruptedException e) {
+            throw new GraphvizException(e.getMessage(), e);
+        }
+    }
+
+    @Nullable
+    private DotProcesses processesFor(@Nullable Rasterizer rasterizer) {
+        return outputFileName == null && !(rasterizer instanceof BuiltInRasterizer) ? processes : null;
+    }
+
+    private boolean streamed(@Nullable DotProcesses procs) {
+        return procs != null || (pipes && outputFileName == null);
+    }
+
+    //pass the graph to stdin and read the result from stdout, using a persistent process if available
+    private EngineResult executeStreamed(@Nullable DotProcesses procs, String src, Options options,
+                                         @Nullable Rasterizer rasterizer) {
+        final List<String> command = commands.command(options, rasterizer);
+        final String code = preprocessCode(src, options);
+        try {
+            final ByteBuffer res = procs == null
+                    ? ByteBuffer.wrap(DotProcesses.run(command, code.getBytes(StandardCharsets.UTF_8), timeout))
+                    : procs.execute(command, code, timeout);
+            return rasterizer instanceof BuiltInRasterizer ? EngineResult.fromBytes(res) : EngineResult.fromUtf8(res);
+        } catch (IOException e) {
+            throw new GraphvizException(e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GraphvizException("Interrupted while waiting for graphviz process.", e);
+        }
+    }
+
+    private void executeBatch(Path path, List<String> commandPrefix, List<Integer> indices, List<String> srcs,
+                              List<Options> options, @Nullable Rasterizer rasterizer, EngineResult[] results)
+            throws IOException, InterruptedException {
+        final List<String> command = new ArrayList<>(commandPrefix);
+        command.add("-O");
+        for (final int index : indices) {
+            final String dotFile = "dotfile" + index + ".dot";
+            Files.write(path.resolve(dotFile), preprocessCode(srcs.get(index), options.get(index))
+                    .getBytes(StandardCharsets.UTF_8));
+            command.add(dotFile);
+        }
+        cmdRunner.exec(command, path.toFile(), timeout * indices.size());
+        final String format = DotCommands.formatName(options.get(indices.get(0)).format, rasterizer);
+        for (final int index : indices) {
+            final Path dotFile = path.resolve("dotfile" + index + ".dot");
+            final Path outFile = path.resolve("dotfile" + index + ".dot." + format);
+            Files.deleteIfExists(dotFile);
+            final ByteBuffer res = ByteBuffer.wrap(Files.readAllBytes(outFile));
+            Files.delete(outFile);
+            results[index] = rasterizer instanceof BuiltInRasterizer
+                    ? EngineResult.fromBytes(res)
+                    : EngineResult.fromUtf8(res);
+        }
+    }
+
     private EngineResult doExecute(Path path, File dotFile, Options options, @Nullable Rasterizer rasterizer)
             throws IOException, InterruptedException {
-        final String engine = getEngineExecutable(options.engine);
-        final String format = getFormatName(options.format, rasterizer);
-        final String command = engine
-                + (options.yInvert != null && options.yInvert ? " -y" : "")
-                + " -T" + format
-                + " " + dotFile.getAbsolutePath() + " -ooutfile." + format;
+        final String format = DotCommands.formatName(options.format, rasterizer);
+        final List<String> command = commands.command(options, rasterizer);
+        command.add(dotFile.getAbsolutePath());
+        command.add("-ooutfile." + format);
         cmdRunner.exec(command, path.toFile(), timeout);
         final Path outFile = path.resolve("outfile." + format);
         if (rasterizer instanceof BuiltInRasterizer) {
             return EngineResult.fromFile(outFile.toFile());
         }
-        final byte[] data = Files.readAllBytes(outFile);
-        return EngineResult.fromString(new String(data, StandardCharsets.UTF_8));
+        return EngineResult.fromUtf8(ByteBuffer.wrap(Files.readAllBytes(outFile)));
     }
 
     protected String preprocessCode(String src, Options options) {
@@ -105,31 +252,6 @@ public class GraphvizCmdLineEngine extends AbstractGraphvizEngine {
         return replacePaths(imgReplaced, IMAGE_ATTR, path -> replacePath(path, options.basedir));
     }
 
-    private String getEngineExecutable(@Nullable Engine engine) {
-        final String exe = SystemUtils.executableName(engine == null ? "dot" : engine.toString().toLowerCase(ENGLISH));
-        if (!CommandRunner.isExecutableFound(exe, envPath)) {
-            final GraphvizException e = new GraphvizException(exe + " command not found");
-            e.setStackTrace(new StackTraceElement[0]);
-            throw e;
-        }
-        return exe;
-    }
-
-    private String getFormatName(@Nullable Format format, @Nullable Rasterizer rasterizer) {
-        if (rasterizer instanceof BuiltInRasterizer) {
-            final BuiltInRasterizer natRast = (BuiltInRasterizer) rasterizer;
-            String f = natRast.format;
-            if (natRast.renderer != null) {
-                f += ":" + natRast.renderer;
-            }
-            if (natRast.formatter != null) {
-                f += ":" + natRast.formatter;
-            }
-            return f;
-        }
-        return format == null ? "svg" : format.vizName;
-    }
-
     private File getOrCreateTempDirectory() {
         final File tempDir = new File(System.getProperty("java.io.tmpdir") + File.separator + "GraphvizJava");
         if (!tempDir.exists() && tempDir.mkdir()) {
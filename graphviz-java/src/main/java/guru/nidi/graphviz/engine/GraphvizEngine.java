@@ -16,6 +16,8 @@
 package guru.nidi.graphviz.engine;
 
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Consumer;
 
 /**
@@ -26,4 +28,21 @@ public interface GraphvizEngine extends AutoCloseable {
     void init(Consumer<GraphvizEngine> onOk, Consumer<GraphvizEngine> onError);
 
     EngineResult execute(String src, Options options, @Nullable Rasterizer rasterizer);
+
+    /**
+     * Process multiple dot files at once.
+     * Engines can override this to share the cost of one execution among all sources.
+     *
+     * @param srcs       the dot files
+     * @param options    the options for each dot file
+     * @param rasterizer the rasterizer for all dot files
+     * @return the results in the same order as the sources
+     */
+    default List<EngineResult> executeAll(List<String> srcs, List<Options> options, @Nullable Rasterizer rasterizer) {
+        final List<EngineResult> results = new ArrayList<>();
+        for (int i = 0; i < srcs.size(); i++) {
+            results.add(execute(srcs.get(i), options.get(i), rasterizer));
+        }
+        return results;
+    }
 }
@@ -0,0 +1,268 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * A bounded pool of engines of the same kind.
+ * Each render checks out an engine, executes on it and checks it back in.
+ * The pool itself is a GraphvizEngine and can be used like any other engine in {@link Graphviz#useEngine}.
+ * It is meant for engines that keep their resources per instance, like {@link GraphvizCmdLineEngine}.
+ * Javascript engines keep their runtime per thread and cannot be pooled,
+ * use {@link GraphvizV8Engine#poolSize} or {@link GraphvizJdkEngine#poolSize} instead.
+ */
+public class GraphvizEnginePool extends AbstractGraphvizEngine {
+    private static final Logger LOG = LoggerFactory.getLogger(GraphvizEnginePool.class);
+    private static final int INIT_TIMEOUT = 120;
+
+    private final Supplier<? extends GraphvizEngine> factory;
+    private final BlockingDeque<PooledEngine> idle = new LinkedBlockingDeque<>();
+    private volatile String engineName = GraphvizEnginePool.class.getName();
+    private int size = Runtime.getRuntime().availableProcessors();
+    private int warmUp = 1;
+    private long idleTimeout;
+    private long acquireTimeout = -1;
+    @Nullable
+    private Semaphore permits;
+    @Nullable
+    private ScheduledExecutorService evictor;
+    private volatile boolean closed;
+
+    public GraphvizEnginePool(Supplier<? extends GraphvizEngine> factory) {
+        super(true);
+        this.factory = factory;
+    }
+
+    /**
+     * The maximum number of engines in use at the same time.
+     * Defaults to the number of available processors.
+     */
+    public GraphvizEnginePool size(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1.");
+        }
+        this.size = size;
+        return this;
+    }
+
+    /**
+     * The number of engines created at initialization. These are never evicted.
+     * At least one engine is always created to verify that the engine is available.
+     */
+    public GraphvizEnginePool warmUp(int warmUp) {
+        this.warmUp = warmUp;
+        return this;
+    }
+
+    /**
+     * Close engines that have not been used for the given time.
+     * A non positive value keeps idle engines forever (the default).
+     */
+    public GraphvizEnginePool idleTimeout(int amount, TimeUnit unit) {
+        this.idleTimeout = MILLISECONDS.convert(amount, unit);
+        return this;
+    }
+
+    /**
+     * How long to wait for a free engine if all are in use.
+     * A negative value waits forever (the default), 0 fails immediately.
+     */
+    public GraphvizEnginePool acquireTimeout(int amount, TimeUnit unit) {
+        this.acquireTimeout = amount < 0 ? -1 : MILLISECONDS.convert(amount, unit);
+        return this;
+    }
+
+    @Override
+    protected void doInit() throws IOException {
+        final GraphvizEngine first = factory.get();
+        if (first instanceof AbstractJsGraphvizEngine) {
+            throw new IllegalArgumentException("Javascript engines cannot be pooled, use their poolSize instead.");
+        }
+        engineName = first.getClass().getName();
+        closed = false;
+        permits = new Semaphore(size, true);
+        for (int i = 0; i < Math.min(size, Math.max(1, warmUp)); i++) {
+            final GraphvizEngine engine = initEngine(i == 0 ? first : factory.get());
+            if (engine == null) {
+                close();
+                throw new IOException("Could not initialize pooled engine.");
+            }
+            idle.addLast(new PooledEngine(engine));
+        }
+        if (idleTimeout > 0) {
+            evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+                final Thread thread = new Thread(r, "GraphvizEnginePool evictor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            final long period = Math.max(1, idleTimeout / 2);
+            evictor.scheduleWithFixedDelay(this::evict, period, period, MILLISECONDS);
+        }
+    }
+
+    @Override
+    public EngineResult execute(String src, Options options, @Nullable Rasterizer rasterizer) {
+        final PooledEngine engine = acquire();
+        try {
+            return engine.engine.execute(src, options, rasterizer);
+        } finally {
+            release(engine);
+        }
+    }
+
+    @Override
+    public List<EngineResult> executeAll(List<String> srcs, List<Options> options, @Nullable Rasterizer rasterizer) {
+        final PooledEngine engine = acquire();
+        try {
+            return engine.engine.executeAll(srcs, options, rasterizer);
+        } finally {
+            release(engine);
+        }
+    }
+
+    /**
+     * @return The number of engines currently available without creating a new one.
+     */
+    public int idleEngines() {
+        return idle.size();
+    }
+
+    //the class of the pooled engines, as they render like it
+    String engineName() {
+        return engineName;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (evictor != null) {
+            evictor.shutdownNow();
+            evictor = null;
+        }
+        PooledEngine engine;
+        while ((engine = idle.pollFirst()) != null) {
+            closeEngine(engine.engine);
+        }
+    }
+
+    private PooledEngine acquire() {
+        if (permits == null || closed) {
+            throw new GraphvizException("Engine pool is not initialized or already closed.");
+        }
+        acquirePermit(permits);
+        final PooledEngine pooled = idle.pollFirst();
+        if (pooled != null) {
+            return pooled;
+        }
+        //a failed creation must free its permit, or the pool runs out of engines
+        try {
+            final GraphvizEngine engine = initEngine(factory.get());
+            if (engine == null) {
+                throw new GraphvizException("Could not initialize pooled engine.");
+            }
+            return new PooledEngine(engine);
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    private void acquirePermit(Semaphore permits) {
+        try {
+            if (acquireTimeout < 0) {
+                permits.acquire();
+            } else if (!permits.tryAcquire(acquireTimeout, MILLISECONDS)) {
+                throw new GraphvizException("No engine available in pool within " + acquireTimeout + " ms.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GraphvizException("Interrupted while waiting for engine.", e);
+        }
+    }
+
+    private void release(PooledEngine engine) {
+        if (closed) {
+            closeEngine(engine.engine);
+        } else {
+            engine.lastUsed = System.currentTimeMillis();
+            idle.addFirst(engine);
+        }
+        if (permits != null) {
+            permits.release();
+        }
+    }
+
+    //idle engines are kept in LRU order, the least recently used one is at the end
+    private void evict() {
+        final long limit = System.currentTimeMillis() - idleTimeout;
+        final int minIdle = Math.max(1, warmUp);
+        PooledEngine last;
+        while (idle.size() > minIdle && (last = idle.peekLast()) != null && last.lastUsed < limit) {
+            if (idle.removeLastOccurrence(last)) {
+                closeEngine(last.engine);
+            }
+        }
+    }
+
+    @Nullable
+    private GraphvizEngine initEngine(GraphvizEngine engine) {
+        final CompletableFuture<Boolean> ok = new CompletableFuture<>();
+        engine.init(e -> ok.complete(true), e -> ok.complete(false));
+        try {
+            if (ok.get(INIT_TIMEOUT, TimeUnit.SECONDS)) {
+                return engine;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            LOG.info("Could not initialize {}", engine, e);
+        }
+        closeEngine(engine);
+        return null;
+    }
+
+    private static void closeEngine(GraphvizEngine engine) {
+        try {
+            engine.close();
+        } catch (Exception e) {
+            LOG.info("Problem closing engine {}", engine, e);
+        }
+    }
+
+    private static final class PooledEngine {
+        final GraphvizEngine engine;
+        long lastUsed = System.currentTimeMillis();
+
+        PooledEngine(GraphvizEngine engine) {
+            this.engine = engine;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getName() + "[size=" + size + "]";
+    }
+}
@@ -15,9 +15,17 @@
  */
 package guru.nidi.graphviz.engine;
 
+import java.util.function.Supplier;
+
 public class GraphvizJdkEngine extends AbstractJsGraphvizEngine {
+    private boolean pooled;
+
     public GraphvizJdkEngine() {
-        super(false, GraphvizJdkEngine::newEngine);
+        this(GraphvizJdkEngine::newEngine);
+    }
+
+    GraphvizJdkEngine(Supplier<JavascriptEngine> engineSupplier) {
+        super(false, engineSupplier);
     }
 
     private static JavascriptEngine newEngine() {
@@ -28,9 +36,33 @@ public class GraphvizJdkEngine extends AbstractJsGraphvizEngine {
         }
     }
 
+    /**
+     * Use a fixed number of javascript contexts shared by all threads instead of one context per thread.
+     * This is only supported by GraalJS, which can use a context from different threads one after the other.
+     * The contexts share the parsed and compiled graphviz javascript.
+     *
+     * @param size the number of contexts, 0 to use one context per thread (the default)
+     */
+    public GraphvizJdkEngine poolSize(int size) {
+        usePool(size);
+        pooled = size > 0;
+        return this;
+    }
+
+    //pooled engines get the promise code in initPooledEngine, no thread local engine is needed
     @Override
     protected void doInit() {
-        engine().executeJavascript(promiseJsCode());
+        if (!pooled) {
+            loadLibrary(engine(), promiseJsCode());
+        }
         super.doInit();
     }
+
+    @Override
+    protected void initPooledEngine(JavascriptEngine engine) {
+        if (!(engine instanceof GraalJavascriptEngine)) {
+            throw new GraphvizException("A pool of javascript engines is only supported with GraalJS.");
+        }
+        loadLibrary(engine, promiseJsCode());
+    }
 }
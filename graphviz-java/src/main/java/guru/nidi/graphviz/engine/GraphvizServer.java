@@ -15,14 +15,15 @@
  */
 package guru.nidi.graphviz.engine;
 
+import guru.nidi.graphviz.engine.Communicator.Message;
 import guru.nidi.graphviz.service.SystemUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.net.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import static guru.nidi.graphviz.engine.Format.SVG_STANDALONE;
 import static java.util.stream.Collectors.toList;
@@ -30,52 +31,135 @@ import static java.util.stream.Collectors.toList;
 final class GraphvizServer {
     private static final Logger LOG = LoggerFactory.getLogger(GraphvizServer.class);
     static final int PORT = 10234;
+    static final String THRESHOLD_PROPERTY = "graphviz.compressionThreshold";
+    static final int HANDSHAKE = -2;
+    static final int PROTOCOL_VERSION = 2;
+    static final int NO_SERVER = -1;
+    private static final int HANDSHAKE_TIMEOUT = 1000;
 
     private GraphvizServer() {
     }
 
-    public static void start(List<GraphvizEngine> engines) throws IOException {
+    public static void start(List<GraphvizEngine> engines, int compressionThreshold) throws IOException {
         final String executable = SystemUtils.executableName("java");
         final List<String> cmd = new ArrayList<>(Arrays.asList(
                 System.getProperty("java.home") + "/bin/" + executable,
+                "-D" + THRESHOLD_PROPERTY + "=" + compressionThreshold,
                 "-cp", System.getProperty("java.class.path"), GraphvizServer.class.getName()));
         cmd.addAll(engines.stream().map(e -> e.getClass().getName()).collect(toList()));
         new ProcessBuilder(cmd).inheritIO().start();
     }
 
+    /**
+     * Ask the running server for its protocol version.
+     *
+     * @return the version, 0 if the server does not understand the handshake or NO_SERVER if none is running
+     */
+    static int runningProtocol() {
+        try (final Socket socket = new Socket("localhost", PORT);
+             final Communicator com = new Communicator(socket, HANDSHAKE_TIMEOUT, true)) {
+            com.writeLen(HANDSHAKE);
+            return com.readLen();
+        } catch (ConnectException e) {
+            return NO_SERVER;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    //servers before the handshake was introduced use text messages
+    static void stopLegacy() {
+        try (final Socket socket = new Socket("localhost", PORT);
+             final Communicator com = new Communicator(socket, 5000)) {
+            com.writeLen(-1);
+        } catch (IOException e) {
+            //ignore
+        }
+    }
+
     public static void main(String... args) throws IOException {
         LOG.info("starting graphviz server...");
+        final int workers = Runtime.getRuntime().availableProcessors();
+        final int compressionThreshold = Integer.getInteger(THRESHOLD_PROPERTY,
+                Communicator.COMPRESSION_THRESHOLD);
         if (args.length > 0) {
-            Graphviz.useEngine(Arrays.stream(args).map(GraphvizServer::engineFromString).collect(toList()));
+            Graphviz.useEngine(Arrays.stream(args)
+                    .map(arg -> pooledEngine(arg, workers))
+                    .collect(toList()));
         }
         LOG.info("started, using engines " + Arrays.toString(args));
+        final ExecutorService connections = Executors.newCachedThreadPool(daemon("graphviz connection"));
+        final ExecutorService renderers = Executors.newFixedThreadPool(workers, daemon("graphviz renderer"));
         try (final ServerSocket ss = new ServerSocket(PORT)) {
-            while (true) {
-                try (final Socket socket = ss.accept();
-                     final Communicator com = new Communicator(socket, 500)) {
-                    final int len = com.readLen();
-                    if (len != 0) {
-                        if (len == -1) {
-                            break;
-                        }
-                        final String s = com.readContent(len);
-                        try {
-                            final String svg = render(s);
-                            com.writeStatus("ok");
-                            com.writeContent(svg);
-                        } catch (GraphvizException e) {
-                            com.writeStatus("fail");
-                            com.writeContent(e.getMessage());
-                        }
-                    }
+            while (!ss.isClosed()) {
+                try {
+                    final Socket socket = ss.accept();
+                    connections.execute(() -> serve(ss, socket, renderers, compressionThreshold));
+                } catch (SocketException e) {
+                    LOG.debug("Server socket closed", e);
                 } catch (Exception e) {
                     LOG.warn("Problem in communication", e);
                 }
             }
+        } finally {
+            connections.shutdownNow();
+            renderers.shutdownNow();
+            Graphviz.releaseEngine();
         }
         LOG.info("graphviz server stopped.");
     }
 
+    //requests of one connection are rendered concurrently, responses are sent as soon as they are ready
+    //a handshake is answered with the protocol version, clients send it before any request
+    private static void serve(ServerSocket ss, Socket socket, ExecutorService renderers, int compressionThreshold) {
+        try (final Communicator com = new Communicator(socket, 0, true, compressionThreshold)) {
+            while (true) {
+                final Message request = com.readMessage(false);
+                if (request.id == HANDSHAKE) {
+                    com.writeLen(PROTOCOL_VERSION);
+                    continue;
+                }
+                if (request.id == -1) {
+                    ss.close();
+                }
+                if (request.id <= 0) {
+                    break;
+                }
+                renderers.execute(() -> respond(com, request));
+            }
+        } catch (Exception e) {
+            LOG.warn("Problem in communication", e);
+        }
+    }
+
+    private static void respond(Communicator com, Message request) {
+        try {
+            try {
+                com.writeMessage(request.id, "ok", render(request.content));
+            } catch (RuntimeException e) {
+                com.writeMessage(request.id, "fail", String.valueOf(e.getMessage()));
+            }
+        } catch (IOException e) {
+            LOG.warn("Problem in communication", e);
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return r -> {
+            final Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    //javascript engines keep one runtime per thread, so they are bounded by the renderer threads
+    private static GraphvizEngine pooledEngine(String name, int workers) {
+        final GraphvizEngine engine = engineFromString(name);
+        return engine instanceof AbstractJsGraphvizEngine
+                ? engine
+                : new GraphvizEnginePool(() -> engineFromString(name)).size(workers);
+    }
+
     private static GraphvizEngine engineFromString(String s) {
         try {
             final Object o = Class.forName(s).getConstructor().newInstance();
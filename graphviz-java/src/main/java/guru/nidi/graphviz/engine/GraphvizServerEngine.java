@@ -15,15 +15,24 @@
  */
 package guru.nidi.graphviz.engine;
 
+import guru.nidi.graphviz.engine.Communicator.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import javax.annotation.Nullable;
 import java.io.IOException;
 import java.net.Socket;
-import java.net.SocketTimeoutException;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 
 public class GraphvizServerEngine extends AbstractGraphvizEngine {
+    private static final Logger LOG = LoggerFactory.getLogger(GraphvizServerEngine.class);
     private final List<GraphvizEngine> engines = new ArrayList<>();
+    private int compressionThreshold = Communicator.COMPRESSION_THRESHOLD;
+    @Nullable
+    private Connection connection;
 
     public GraphvizServerEngine() {
         super(false);
@@ -36,6 +45,18 @@ public class GraphvizServerEngine extends AbstractGraphvizEngine {
         return this;
     }
 
+    /**
+     * Compress the messages between this engine and the server that are bigger than the given number of bytes.
+     * The server uses the same threshold if it is started by this engine.
+     *
+     * @param bytes the size from which on messages are compressed
+     * @return this engine
+     */
+    public GraphvizServerEngine compressionThreshold(int bytes) {
+        compressionThreshold = bytes;
+        return this;
+    }
+
     @SuppressWarnings("unchecked")
     public GraphvizServerEngine timeout(int amount, TimeUnit unit) {
         return super.timeout(amount, unit);
@@ -45,51 +66,176 @@ public class GraphvizServerEngine extends AbstractGraphvizEngine {
     public EngineResult execute(String src, Options options, @Nullable Rasterizer rasterizer) {
         try {
             return EngineResult.fromString(createSvg(src, options));
-        } catch (SocketTimeoutException e) {
-            throw new GraphvizException("Engine took too long to respond, try setting a higher timout");
         } catch (IOException e) {
             throw new GraphvizException("Problem in communication with server", e);
         }
     }
 
     @Override
-    protected void doInit() throws IOException {
-        if (!canConnect()) {
-            GraphvizServer.start(engines);
-            for (int i = 0; i < 100 && !canConnect(); i++) {
-                try {
-                    Thread.sleep(50);
-                } catch (InterruptedException e) {
-                    //ignore
-                }
+    public List<EngineResult> executeAll(List<String> srcs, List<Options> options, @Nullable Rasterizer rasterizer) {
+        try {
+            final Connection con = connection();
+            final List<CompletableFuture<String>> responses = new ArrayList<>();
+            for (int i = 0; i < srcs.size(); i++) {
+                responses.add(con.request(options.get(i).toJson(true) + "@@@" + srcs.get(i)));
             }
-            if (!canConnect()) {
-                throw new IOException("Could not connect to server");
+            final List<EngineResult> results = new ArrayList<>();
+            for (final CompletableFuture<String> response : responses) {
+                results.add(EngineResult.fromString(await(response)));
             }
+            return results;
+        } catch (IOException e) {
+            throw new GraphvizException("Problem in communication with server", e);
         }
     }
 
+    @Override
+    public void close() {
+        synchronized (engines) {
+            if (connection != null) {
+                connection.close();
+                connection = null;
+            }
+        }
+    }
+
+    @Override
+    protected void doInit() throws IOException {
+        final int protocol = GraphvizServer.runningProtocol();
+        if (protocol == GraphvizServer.PROTOCOL_VERSION) {
+            return;
+        }
+        if (protocol != GraphvizServer.NO_SERVER) {
+            LOG.info("Restarting graphviz server using incompatible protocol version {}", protocol);
+            stopServer();
+            GraphvizServer.stopLegacy();
+            waitFor(() -> GraphvizServer.runningProtocol() == GraphvizServer.NO_SERVER);
+        }
+        GraphvizServer.start(engines, compressionThreshold);
+        waitFor(() -> GraphvizServer.runningProtocol() != GraphvizServer.NO_SERVER);
+        final int started = GraphvizServer.runningProtocol();
+        if (started == GraphvizServer.NO_SERVER) {
+            throw new IOException("Could not connect to server");
+        }
+        if (started != GraphvizServer.PROTOCOL_VERSION) {
+            throw new IOException("The server on port " + GraphvizServer.PORT + " uses protocol version " + started
+                    + " instead of " + GraphvizServer.PROTOCOL_VERSION + ", stop it to let a new one start");
+        }
+    }
+
+    /**
+     * Check if a server with a compatible protocol version is running.
+     *
+     * @return if the server is running and answers the handshake with the expected version
+     */
     public boolean canConnect() {
-        try {
-            try (final Socket socket = new Socket("localhost", GraphvizServer.PORT)) {
-                return true;
+        return GraphvizServer.runningProtocol() == GraphvizServer.PROTOCOL_VERSION;
+    }
+
+    private static void waitFor(BooleanSupplier condition) {
+        for (int i = 0; i < 100 && !condition.getAsBoolean(); i++) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                //ignore
             }
-        } catch (IOException e) {
-            return false;
         }
     }
 
     private String createSvg(String src, Options options) throws IOException {
-        return communicating(timeout, com -> {
-            com.writeContent(options.toJson(true) + "@@@" + src);
-            final String status = com.readStatus();
-            final int len = com.readLen();
-            final String content = com.readContent(len);
-            if (!"ok".equals(status)) {
-                throw new GraphvizException(content);
+        return await(connection().request(options.toJson(true) + "@@@" + src));
+    }
+
+    private String await(CompletableFuture<String> response) {
+        try {
+            return response.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            response.cancel(false);
+            throw new GraphvizException("Engine took too long to respond, try setting a higher timout");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof GraphvizException) {
+                throw (GraphvizException) e.getCause();
+            }
+            throw new GraphvizException("Problem in communication with server", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GraphvizException("Waiting for result interrupted", e);
+        }
+    }
+
+    private Connection connection() throws IOException {
+        synchronized (engines) {
+            if (connection == null || connection.isClosed()) {
+                connection = new Connection(compressionThreshold);
+            }
+            return connection;
+        }
+    }
+
+    /**
+     * A persistent connection to the server.
+     * Requests are tagged with an id, so they can be pipelined and responses can arrive in any order.
+     */
+    private static final class Connection {
+        private static final Logger LOG = LoggerFactory.getLogger(Connection.class);
+        private final Communicator com;
+        private final AtomicInteger ids = new AtomicInteger();
+        private final Map<Integer, CompletableFuture<String>> pending = new ConcurrentHashMap<>();
+        private volatile boolean closed;
+
+        Connection(int compressionThreshold) throws IOException {
+            com = new Communicator(new Socket("localhost", GraphvizServer.PORT), 0, true, compressionThreshold);
+            final Thread reader = new Thread(this::readResponses, "graphviz server connection");
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        CompletableFuture<String> request(String content) throws IOException {
+            final int id = ids.incrementAndGet();
+            final CompletableFuture<String> response = new CompletableFuture<>();
+            response.whenComplete((res, e) -> pending.remove(id));
+            pending.put(id, response);
+            try {
+                com.writeMessage(id, "", content);
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+            return response;
+        }
+
+        private void readResponses() {
+            try {
+                Message response;
+                while ((response = com.readMessage(true)).id > 0) {
+                    final CompletableFuture<String> future = pending.get(response.id);
+                    if (future != null) {
+                        if ("ok".equals(response.status)) {
+                            future.complete(response.content);
+                        } else {
+                            future.completeExceptionally(new GraphvizException(response.content));
+                        }
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                if (!closed) {
+                    LOG.info("Connection to server lost", e);
+                }
             }
-            return content;
-        });
+            close();
+        }
+
+        boolean isClosed() {
+            return closed;
+        }
+
+        void close() {
+            closed = true;
+            com.close();
+            for (final CompletableFuture<String> future : pending.values()) {
+                future.completeExceptionally(new IOException("Connection to server closed"));
+            }
+        }
     }
 
     public static void stopServer() {
@@ -109,7 +255,7 @@ public class GraphvizServerEngine extends AbstractGraphvizEngine {
 
     private static <T> T communicating(int timeout, ComFunc<T> action) throws IOException {
         try (final Socket socket = new Socket("localhost", GraphvizServer.PORT);
-             final Communicator com = new Communicator(socket, timeout)) {
+             final Communicator com = new Communicator(socket, timeout, true)) {
             return action.apply(com);
         }
     }
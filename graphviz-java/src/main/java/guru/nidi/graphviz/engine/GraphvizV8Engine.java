@@ -25,4 +25,16 @@ public class GraphvizV8Engine extends AbstractJsGraphvizEngine {
     public GraphvizV8Engine(@Nullable String extractionPath) {
         super(true, () -> new V8JavascriptEngine(extractionPath));
     }
+
+    /**
+     * Use a fixed number of V8 runtimes shared by all threads instead of one runtime per thread.
+     * Starting a V8 runtime and loading the graphviz javascript takes seconds,
+     * so this is recommended if the engine is used by many threads.
+     *
+     * @param size the number of V8 runtimes, 0 to use one runtime per thread (the default)
+     */
+    public GraphvizV8Engine poolSize(int size) {
+        usePool(size);
+        return this;
+    }
 }
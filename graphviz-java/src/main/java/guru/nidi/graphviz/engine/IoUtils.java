@@ -15,14 +15,38 @@
  */
 package guru.nidi.graphviz.engine;
 
-import java.io.IOException;
-import java.io.InputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 
 final class IoUtils {
+    private static final Logger LOG = LoggerFactory.getLogger(IoUtils.class);
+
     private IoUtils() {
     }
 
+    //a directory with only files in it
+    static void deleteDirectory(File dir) {
+        final File[] files = dir.listFiles();
+        if (files != null) {
+            for (final File file : files) {
+                if (!file.delete()) {
+                    LOG.warn("Could not delete temporary file {}", file);
+                }
+            }
+        }
+        if (!dir.delete()) {
+            LOG.warn("Could not delete temporary directory {}", dir);
+        }
+    }
+
     static String readStream(InputStream in) throws IOException {
         final byte[] buf = new byte[in.available()];
         int read, total = 0;
@@ -32,6 +56,43 @@ final class IoUtils {
         return new String(buf, StandardCharsets.UTF_8);
     }
 
+    static byte[] readAllBytes(InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buf = new byte[8192];
+        int read;
+        while ((read = in.read(buf)) >= 0) {
+            out.write(buf, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    //a copy of the remaining bytes
+    static byte[] toArray(ByteBuffer bytes) {
+        final byte[] array = new byte[bytes.remaining()];
+        bytes.duplicate().get(array);
+        return array;
+    }
+
+    static void write(ByteBuffer bytes, OutputStream out) throws IOException {
+        if (bytes.hasArray()) {
+            out.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+        } else {
+            Channels.newChannel(out).write(bytes.duplicate());
+        }
+    }
+
+    static long transfer(File file, OutputStream out) throws IOException {
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final WritableByteChannel target = Channels.newChannel(out);
+            final long size = channel.size();
+            long pos = 0;
+            while (pos < size) {
+                pos += channel.transferTo(pos, size - pos, target);
+            }
+            return size;
+        }
+    }
+
     static boolean isOnClasspath(String clazz) {
         try {
             Class.forName(clazz);
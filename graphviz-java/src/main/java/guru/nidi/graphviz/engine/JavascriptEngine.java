@@ -37,4 +37,25 @@ public interface JavascriptEngine extends AutoCloseable {
      * @return the value given to result or error
      */
     String executeJavascript(String pre, String src, String post);
+
+    /**
+     * Call a global javascript function with string arguments.
+     * Engines that support it pass the arguments as values, so they don't need to be converted into javascript code.
+     * At the end, the function must either call result(s: String) or error(s: String).
+     *
+     * @param function the name of the function
+     * @param args     the arguments, do not need to be escaped.
+     * @return the value given to result or error
+     */
+    default String executeFunction(String function, String... args) {
+        if (args.length == 0) {
+            return executeJavascript(function + "() //", "", "");
+        }
+        final StringBuilder pre = new StringBuilder(function).append('(');
+        for (int i = 0; i < args.length - 1; i++) {
+            AbstractJavascriptEngine.appendQuoted(pre, args[i]);
+            pre.append(',');
+        }
+        return executeJavascript(pre.toString(), args[args.length - 1], ")");
+    }
 }
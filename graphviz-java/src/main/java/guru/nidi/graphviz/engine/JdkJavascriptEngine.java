@@ -40,6 +40,11 @@ public class JdkJavascriptEngine implements JavascriptEngine {
         return engine.executeJavascript(pre, src, post);
     }
 
+    @Override
+    public String executeFunction(String function, String... args) {
+        return engine.executeFunction(function, args);
+    }
+
     @Override
     public void close() throws Exception {
         engine.close();
@@ -0,0 +1,228 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-memory least recently used cache, bounded by the number of entries and their total size.
+ * Optionally, entries are also stored in a directory which survives restarts of the JVM.
+ * This disk tier is unbounded unless a maximum size is given,
+ * then the least recently used files are deleted when it is exceeded.
+ */
+public class LruRenderCache implements RenderCache {
+    private static final Logger LOG = LoggerFactory.getLogger(LruRenderCache.class);
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final Map<String, byte[]> entries = new LinkedHashMap<>(16, .75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong diskBytes = new AtomicLong();
+    private final Object diskLock = new Object();
+    private long bytes;
+    @Nullable
+    private Path diskDir;
+    private long maxDiskBytes = Long.MAX_VALUE;
+
+    /**
+     * Create a cache with the given limits for the in-memory entries.
+     *
+     * @param maxEntries the maximum number of entries kept in memory, 0 keeps none
+     * @param maxBytes   the maximum total size of the entries kept in memory, 0 keeps none
+     * @throws IllegalArgumentException if a limit is negative
+     */
+    public LruRenderCache(int maxEntries, long maxBytes) {
+        if (maxEntries < 0 || maxBytes < 0) {
+            throw new IllegalArgumentException("maxEntries and maxBytes must not be negative, but were "
+                    + maxEntries + " and " + maxBytes + ".");
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Also store the entries in the given directory, without limiting its size.
+     *
+     * @param dir the directory to store the entries in
+     * @return this cache
+     */
+    public LruRenderCache diskTier(File dir) {
+        return diskTier(dir, Long.MAX_VALUE);
+    }
+
+    /**
+     * Also store the entries in the given directory.
+     * The files are shared with other caches using the same directory, so its size is only bounded approximately.
+     *
+     * @param dir      the directory to store the entries in
+     * @param maxBytes the maximum total size of the files, the least recently used ones are deleted beyond it
+     * @return this cache
+     * @throws IllegalArgumentException if maxBytes is negative
+     */
+    public LruRenderCache diskTier(File dir, long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes must not be negative, but was " + maxBytes + ".");
+        }
+        try {
+            diskDir = Files.createDirectories(dir.toPath());
+        } catch (IOException e) {
+            throw new GraphvizException("Could not create cache directory " + dir, e);
+        }
+        maxDiskBytes = maxBytes;
+        if (maxBytes < Long.MAX_VALUE) {
+            trimDisk(diskDir);
+        }
+        return this;
+    }
+
+    @Nullable
+    @Override
+    public byte[] get(String key) {
+        synchronized (entries) {
+            final byte[] value = entries.get(key);
+            if (value != null) {
+                hits.incrementAndGet();
+                return value;
+            }
+        }
+        final byte[] value = readDisk(key);
+        if (value == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        putMemory(key, value);
+        return value;
+    }
+
+    @Override
+    public void put(String key, byte[] value) {
+        putMemory(key, value);
+        writeDisk(key, value);
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long bytes() {
+        synchronized (entries) {
+            return bytes;
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            bytes = 0;
+        }
+    }
+
+    private void putMemory(String key, byte[] value) {
+        if (value.length > maxBytes) {
+            return;
+        }
+        synchronized (entries) {
+            final byte[] old = entries.put(key, value);
+            bytes += value.length - (old == null ? 0 : old.length);
+            final Iterator<byte[]> lru = entries.values().iterator();
+            while (entries.size() > maxEntries || bytes > maxBytes) {
+                bytes -= lru.next().length;
+                lru.remove();
+            }
+        }
+    }
+
+    @Nullable
+    private byte[] readDisk(String key) {
+        if (diskDir == null) {
+            return null;
+        }
+        final Path file = diskDir.resolve(key);
+        try {
+            if (!Files.exists(file)) {
+                return null;
+            }
+            final byte[] value = Files.readAllBytes(file);
+            if (maxDiskBytes < Long.MAX_VALUE) {
+                Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            }
+            return value;
+        } catch (IOException e) {
+            LOG.warn("Could not read cache entry {}", file, e);
+            return null;
+        }
+    }
+
+    private void writeDisk(String key, byte[] value) {
+        if (diskDir == null) {
+            return;
+        }
+        try {
+            final Path temp = Files.createTempFile(diskDir, key, ".tmp");
+            Files.write(temp, value);
+            Files.move(temp, diskDir.resolve(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.warn("Could not write cache entry {}", key, e);
+            return;
+        }
+        if (diskBytes.addAndGet(value.length) > maxDiskBytes) {
+            trimDisk(diskDir);
+        }
+    }
+
+    //recount the directory, as other caches could share it, and delete the least recently used files
+    private void trimDisk(Path dir) {
+        synchronized (diskLock) {
+            final File[] files = dir.toFile().listFiles((d, name) -> !name.endsWith(".tmp"));
+            if (files == null) {
+                return;
+            }
+            Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+            long total = 0;
+            for (final File file : files) {
+                total += file.length();
+            }
+            for (int i = 0; i < files.length && total > maxDiskBytes; i++) {
+                final long length = files[i].length();
+                if (files[i].delete()) {
+                    total -= length;
+                }
+            }
+            diskBytes.set(total);
+        }
+    }
+}
@@ -53,4 +53,15 @@ class ProcessOptions {
     ProcessOptions dpi(double dpi) {
         return new ProcessOptions(width, height, scale, fontAdjust, dpi);
     }
+
+    @Override
+    public String toString() {
+        return "ProcessOptions{"
+                + "width=" + width
+                + ", height=" + height
+                + ", scale=" + scale
+                + ", fontAdjust=" + fontAdjust
+                + ", dpi=" + dpi
+                + '}';
+    }
 }
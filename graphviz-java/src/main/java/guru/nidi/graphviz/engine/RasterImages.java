@@ -0,0 +1,130 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import javax.annotation.Nullable;
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.util.function.Consumer;
+
+/**
+ * Rasterizes the results of a graph, using the render cache if the images do not need a graphics configurer.
+ */
+final class RasterImages {
+    private final Graphviz graphviz;
+    @Nullable
+    private final Consumer<Graphics2D> graphicsConfigurer;
+
+    RasterImages(Graphviz graphviz, @Nullable Consumer<Graphics2D> graphicsConfigurer) {
+        this.graphviz = graphviz;
+        this.graphicsConfigurer = graphicsConfigurer;
+    }
+
+    //rasterize only once on a cache miss, the PNG encoding is just needed for the cache
+    BufferedImage toImage(String content) {
+        final RenderCache cache = Graphviz.cache();
+        final String key = cacheKey(cache, content);
+        final byte[] cached = cache == null || key == null ? null : cache.get(key);
+        if (cached != null) {
+            return read(cached);
+        }
+        final BufferedImage image = rasterize(content);
+        if (cache != null && key != null) {
+            cachePng(cache, key, image);
+        }
+        return image;
+    }
+
+    //a PNG from the cache, or null if caching is not possible
+    @Nullable
+    byte[] toPng(String content) {
+        final RenderCache cache = Graphviz.cache();
+        final String key = cacheKey(cache, content);
+        if (cache == null || key == null) {
+            return null;
+        }
+        final byte[] cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        return cachePng(cache, key, rasterize(content));
+    }
+
+    private byte[] cachePng(RenderCache cache, String key, BufferedImage image) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeToOutputStream(out, "png", image);
+        final byte[] png = out.toByteArray();
+        cache.put(key, png);
+        return png;
+    }
+
+    @Nullable
+    private String cacheKey(@Nullable RenderCache cache, String content) {
+        return cache == null || graphicsConfigurer != null || graphviz.rasterizer == null
+                ? null
+                : CacheKey.of(graphviz.rasterizer.getClass().getName(), graphviz.processOptions.toString(), content);
+    }
+
+    private BufferedImage rasterize(String content) {
+        if (graphviz.rasterizer == null) {
+            throw new IllegalStateException("- Rasterizer explicitly set no null or\n"
+                    + "- neither Batik nor Salamander found on classpath.");
+        }
+        return graphviz.rasterizer.rasterize(graphviz, graphicsConfigurer, content);
+    }
+
+    static BufferedImage read(File file) {
+        try {
+            final BufferedImage image = ImageIO.read(file);
+            if (image == null) {
+                throw new IllegalArgumentException("Could not convert the resulting file into an Image");
+            }
+            return image;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not convert the resulting file into an Image", e);
+        }
+    }
+
+    static BufferedImage read(byte[] data) {
+        try {
+            final BufferedImage image = ImageIO.read(new ByteArrayInputStream(data));
+            if (image == null) {
+                throw new IllegalArgumentException("Could not convert the result into an Image");
+            }
+            return image;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Could not convert the result into an Image", e);
+        }
+    }
+
+    static void writeToFile(File output, String format, BufferedImage img) {
+        try {
+            ImageIO.write(img, format, output);
+        } catch (IOException e) {
+            throw new GraphvizException("Problem writing to file", e);
+        }
+    }
+
+    static void writeToOutputStream(OutputStream outputStream, String format, BufferedImage img) {
+        try (final OutputStream closing = outputStream) {
+            ImageIO.write(img, format, closing);
+        } catch (IOException e) {
+            throw new GraphvizException("Problem writing to output stream", e);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import javax.annotation.Nullable;
+
+/**
+ * A cache for rendered results.
+ * The keys are hashes of all inputs that influence a result, so an entry never gets stale.
+ * Implementations must be thread safe.
+ */
+public interface RenderCache {
+    @Nullable
+    byte[] get(String key);
+
+    void put(String key, byte[] value);
+}
@@ -16,12 +16,13 @@
 package guru.nidi.graphviz.engine;
 
 import javax.annotation.Nullable;
-import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.util.concurrent.*;
 import java.util.function.Consumer;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -32,30 +33,98 @@ public class Renderer {
     @Nullable
     private final Consumer<Graphics2D> graphicsConfigurer;
     private final Format output;
+    @Nullable
+    private final Executor executor;
+    @Nullable
+    private final EngineResult result;
 
     Renderer(Graphviz graphviz, @Nullable Consumer<Graphics2D> graphicsConfigurer, Format output) {
+        this(graphviz, graphicsConfigurer, output, null, null);
+    }
+
+    Renderer(Graphviz graphviz, @Nullable Consumer<Graphics2D> graphicsConfigurer, Format output,
+             EngineResult result) {
+        this(graphviz, graphicsConfigurer, output, null, result);
+    }
+
+    private Renderer(Graphviz graphviz, @Nullable Consumer<Graphics2D> graphicsConfigurer, Format output,
+                     @Nullable Executor executor, @Nullable EngineResult result) {
         this.graphviz = graphviz;
         this.graphicsConfigurer = graphicsConfigurer;
         this.output = output;
+        this.executor = executor;
+        this.result = result;
     }
 
     public Renderer withGraphics(Consumer<Graphics2D> graphicsConfigurer) {
-        return new Renderer(graphviz, graphicsConfigurer, output);
+        return new Renderer(graphviz, graphicsConfigurer, output, executor, result);
+    }
+
+    /**
+     * The executor used by the *Async methods.
+     * If not set, a shared, fixed pool of daemon threads is used, one per available processor.
+     * Its threads are never retired, so engines that keep a runtime per thread only start as many runtimes.
+     */
+    public Renderer withExecutor(Executor executor) {
+        return new Renderer(graphviz, graphicsConfigurer, output, executor, result);
+    }
+
+    public CompletableFuture<String> toStringAsync() {
+        return CompletableFuture.supplyAsync(this::toString, executor());
+    }
+
+    public CompletableFuture<File> toFileAsync(File file) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return toFile(file);
+            } catch (IOException e) {
+                throw new GraphvizException("Problem writing to file", e);
+            }
+        }, executor());
+    }
+
+    public CompletableFuture<Void> toOutputStreamAsync(OutputStream outputStream) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                toOutputStream(outputStream);
+            } catch (IOException e) {
+                throw new GraphvizException("Problem writing to output stream", e);
+            }
+        }, executor());
+    }
+
+    public CompletableFuture<BufferedImage> toImageAsync() {
+        return CompletableFuture.supplyAsync(this::toImage, executor());
+    }
+
+    private Executor executor() {
+        return executor == null ? DefaultExecutor.INSTANCE : executor;
     }
 
     public String toString() {
-        return execute().map(file -> {
-            throw new IllegalArgumentException("Expected a String result, but found a File."
-                    + " Use toFile / toImage instead of toString or use a different Rasterizer (not the built-in).");
-        }, string -> string);
+        return execute().map(file -> noStringResult("File"), bytes -> noStringResult("binary"), string -> string);
+    }
+
+    private static String noStringResult(String type) {
+        throw new IllegalArgumentException("Expected a String result, but found a " + type + " result."
+                + " Use toFile / toImage instead of toString or use a different Rasterizer (not the built-in).");
     }
 
     public File toFile(File file) throws IOException {
         return execute().mapIO(
                 fileRes -> toFile(fileRes, file),
+                bytes -> toFile(bytes, file),
+                utf8 -> output.image ? toFile(UTF_8.decode(utf8).toString(), file) : toTextFile(utf8, file),
                 string -> toFile(string, file));
     }
 
+    private File toFile(ByteBuffer bytes, File target) throws IOException {
+        final String ext = graphviz.rasterizer instanceof BuiltInRasterizer
+                ? ((BuiltInRasterizer) graphviz.rasterizer).format
+                : output.fileExtension;
+        return write(bytes, withExt(target, ext));
+    }
+
     private File toFile(File source, File target) throws IOException {
         final File out = withExt(target, getExt(source));
         Files.createDirectories(target.getAbsoluteFile().getParentFile().toPath());
@@ -67,7 +136,12 @@ public class Renderer {
         final File target = withExt(file, output.fileExtension);
         Files.createDirectories(file.getAbsoluteFile().getParentFile().toPath());
         if (output.image) {
-            writeToFile(target, output.name().toLowerCase(ENGLISH), toImage(content));
+            final byte[] png = toPng(content);
+            if (png == null) {
+                RasterImages.writeToFile(target, output.name().toLowerCase(ENGLISH), images().toImage(content));
+            } else {
+                Files.write(target.toPath(), png);
+            }
         } else {
             try (final Writer out = new OutputStreamWriter(new FileOutputStream(target), UTF_8)) {
                 out.write(content);
@@ -76,6 +150,18 @@ public class Renderer {
         return target;
     }
 
+    private File toTextFile(ByteBuffer utf8, File target) throws IOException {
+        return write(utf8, withExt(target, output.fileExtension));
+    }
+
+    private File write(ByteBuffer bytes, File target) throws IOException {
+        Files.createDirectories(target.getAbsoluteFile().getParentFile().toPath());
+        try (final OutputStream out = Files.newOutputStream(target.toPath())) {
+            IoUtils.write(bytes, out);
+        }
+        return target;
+    }
+
     private File withExt(File file, String ext) {
         return file.getName().contains(".") ? file : new File(file.getParentFile(), file.getName() + "." + ext);
     }
@@ -84,21 +170,47 @@ public class Renderer {
         return file.getName().substring(file.getName().lastIndexOf('.') + 1);
     }
 
+    /**
+     * Write the result to the given stream and close it.
+     *
+     * @param outputStream the stream to write to
+     * @throws IOException if the stream could not be written
+     */
     public void toOutputStream(OutputStream outputStream) throws IOException {
-        execute().mapIO(
-                file -> Files.copy(file.toPath(), outputStream),
-                string -> toOutputStream(string, outputStream));
+        try (final OutputStream out = outputStream) {
+            execute().mapIO(
+                    file -> IoUtils.transfer(file, out),
+                    bytes -> toOutputStream(bytes, out),
+                    utf8 -> output.image
+                            ? toOutputStream(UTF_8.decode(utf8).toString(), out)
+                            : toOutputStream(utf8, out),
+                    string -> toOutputStream(string, out));
+        }
+    }
+
+    //all variants return the number of bytes written, the caller closes the stream
+    private long toOutputStream(ByteBuffer bytes, OutputStream out) throws IOException {
+        final int len = bytes.remaining();
+        IoUtils.write(bytes, out);
+        return len;
     }
 
-    private long toOutputStream(String content, OutputStream outputStream) throws IOException {
+    private long toOutputStream(String content, OutputStream out) throws IOException {
+        final byte[] data;
         if (output.image) {
-            writeToOutputStream(outputStream, output.name().toLowerCase(ENGLISH), toImage(content));
+            final byte[] png = toPng(content);
+            data = png == null ? encodeImage(content) : png;
         } else {
-            try (final Writer out = new OutputStreamWriter(outputStream, UTF_8)) {
-                out.write(content);
-            }
+            data = content.getBytes(UTF_8);
         }
-        return 0;
+        out.write(data);
+        return data.length;
+    }
+
+    private byte[] encodeImage(String content) {
+        final ByteArrayOutputStream image = new ByteArrayOutputStream();
+        RasterImages.writeToOutputStream(image, output.name().toLowerCase(ENGLISH), images().toImage(content));
+        return image.toByteArray();
     }
 
     public BufferedImage toImage() {
@@ -106,46 +218,35 @@ public class Renderer {
     }
 
     private BufferedImage toImage(EngineResult result) {
-        return result.map(this::toImage, this::toImage);
+        return result.map(RasterImages::read, bytes -> RasterImages.read(IoUtils.toArray(bytes)),
+                content -> images().toImage(content));
     }
 
-    private BufferedImage toImage(String content) {
-        if (graphviz.rasterizer == null) {
-            throw new IllegalStateException("- Rasterizer explicitly set no null or\n"
-                    + "- neither Batik nor Salamander found on classpath.");
-        }
-        return graphviz.rasterizer.rasterize(graphviz, graphicsConfigurer, content);
+    //a PNG from the cache, or null if the image must be rasterized and encoded
+    @Nullable
+    private byte[] toPng(String content) {
+        return output == Format.PNG ? images().toPng(content) : null;
     }
 
-    private BufferedImage toImage(File file) {
-        try {
-            final BufferedImage image = ImageIO.read(file);
-            if (image == null) {
-                throw new IllegalArgumentException("Could not convert the resulting file into an Image");
-            }
-            return image;
-        } catch (IOException e) {
-            throw new IllegalArgumentException("Could not convert the resulting file into an Image", e);
-        }
+    private RasterImages images() {
+        return new RasterImages(graphviz, graphicsConfigurer);
     }
 
     private EngineResult execute() {
-        return graphviz.execute();
+        return result == null ? graphviz.execute() : result;
     }
 
-    private void writeToFile(File output, String format, BufferedImage img) {
-        try {
-            ImageIO.write(img, format, output);
-        } catch (IOException e) {
-            throw new GraphvizException("Problem writing to file", e);
+    private static final class DefaultExecutor {
+        static final ExecutorService INSTANCE = Executors.newFixedThreadPool(
+                Runtime.getRuntime().availableProcessors(), DefaultExecutor::daemonThread);
+
+        private DefaultExecutor() {
         }
-    }
 
-    private void writeToOutputStream(OutputStream outputStream, String format, BufferedImage img) {
-        try (final OutputStream closing = outputStream) {
-            ImageIO.write(img, format, closing);
-        } catch (IOException e) {
-            throw new GraphvizException("Problem writing to output stream", e);
+        private static Thread daemonThread(Runnable r) {
+            final Thread thread = new Thread(r, "Graphviz renderer");
+            thread.setDaemon(true);
+            return thread;
         }
     }
 }
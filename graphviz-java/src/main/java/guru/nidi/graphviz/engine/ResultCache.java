@@ -0,0 +1,76 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Looks up and stores the results of the engines in a {@link RenderCache}.
+ */
+final class ResultCache {
+    private ResultCache() {
+    }
+
+    @Nullable
+    static EngineResult get(@Nullable RenderCache c, GraphvizEngine engine, Graphviz graphviz, String processed,
+                            @Nullable Rasterizer rasterizer) {
+        final String key = key(c, engine, graphviz, processed, rasterizer);
+        if (c == null || key == null) {
+            return null;
+        }
+        final byte[] value = c.get(key);
+        return value == null ? null : EngineResult.fromUtf8(ByteBuffer.wrap(value));
+    }
+
+    static EngineResult put(@Nullable RenderCache c, GraphvizEngine engine, Graphviz graphviz, String processed,
+                            @Nullable Rasterizer rasterizer, EngineResult result) {
+        final String key = key(c, engine, graphviz, processed, rasterizer);
+        if (c == null || key == null) {
+            return result;
+        }
+        return result.mapText(s -> cached(c, key, s), b -> cached(c, key, b));
+    }
+
+    private static String cached(RenderCache c, String key, String value) {
+        c.put(key, value.getBytes(UTF_8));
+        return value;
+    }
+
+    private static ByteBuffer cached(RenderCache c, String key, ByteBuffer value) {
+        c.put(key, IoUtils.toArray(value));
+        return value;
+    }
+
+    //results of the built-in rasterizer are files which are not cached
+    //engines render differently, e.g. different graphviz versions, so results are cached per engine
+    @Nullable
+    private static String key(@Nullable RenderCache c, GraphvizEngine engine, Graphviz graphviz, String processed,
+                              @Nullable Rasterizer rasterizer) {
+        return c == null || rasterizer instanceof BuiltInRasterizer
+                ? null
+                : CacheKey.of(engineName(engine), processed,
+                graphviz.options.toJson(true), graphviz.processOptions.toString());
+    }
+
+    private static String engineName(GraphvizEngine engine) {
+        return engine instanceof GraphvizEnginePool
+                ? ((GraphvizEnginePool) engine).engineName()
+                : engine.getClass().getName();
+    }
+}
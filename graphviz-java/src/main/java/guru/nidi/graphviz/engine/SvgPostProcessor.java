@@ -0,0 +1,147 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Adjusts the size, scale and font sizes of SVGs created by graphviz.
+ */
+final class SvgPostProcessor {
+    private static final Logger LOG = LoggerFactory.getLogger(SvgPostProcessor.class);
+    private static final Pattern FONT_PATTERN = Pattern.compile("font-size=\"(.*?)\"");
+    private static final Pattern SVG_PATTERN = Pattern.compile(
+            "<svg width=\"(?<width>\\d+)(?<unit>p[tx])\" height=\"(?<height>\\d+)p[tx]\""
+                    + "(?<between>.*?>\\R<g.*?)transform=\"scale\\((?<scaleX>[0-9.]+) (?<scaleY>[0-9.]+)\\)",
+            Pattern.DOTALL);
+    private static final byte[] SVG_START = "<svg ".getBytes(UTF_8);
+    private static final byte[] SCALE_START = "transform=\"scale(".getBytes(UTF_8);
+    private static final byte[] SCALE_END = {')'};
+
+    private SvgPostProcessor() {
+    }
+
+    static EngineResult process(ProcessOptions options, EngineResult result, boolean prefix) {
+        return options.fontAdjust == 1
+                ? result.mapText(s -> postProcessSvg(options, s, prefix), b -> postProcessSvgHead(options, b, prefix))
+                : result.mapString(s -> postProcessSvg(options, s, prefix));
+    }
+
+    //only the part up to the scale transform is changed, so the rest does not need to be decoded
+    private static ByteBuffer postProcessSvgHead(ProcessOptions options, ByteBuffer svg, boolean prefix) {
+        final int end = headEnd(svg);
+        if (end < 0) {
+            return UTF_8.encode(postProcessSvg(options, UTF_8.decode(svg).toString(), prefix));
+        }
+        final ByteBuffer head = svg.duplicate();
+        head.limit(svg.position() + end);
+        final ByteBuffer tail = svg.duplicate();
+        tail.position(svg.position() + end);
+        final ByteBuffer processed = UTF_8.encode(postProcessSvg(options, UTF_8.decode(head).toString(), prefix));
+        final ByteBuffer res = ByteBuffer.allocate(processed.remaining() + tail.remaining());
+        res.put(processed).put(tail);
+        res.flip();
+        return res;
+    }
+
+    private static int headEnd(ByteBuffer svg) {
+        final int svgStart = indexOf(svg, SVG_START, 0);
+        final int scaleStart = svgStart < 0 ? -1 : indexOf(svg, SCALE_START, svgStart);
+        final int scaleEnd = scaleStart < 0 ? -1 : indexOf(svg, SCALE_END, scaleStart);
+        return scaleEnd < 0 ? -1 : scaleEnd + 1;
+    }
+
+    private static int indexOf(ByteBuffer buf, byte[] pattern, int from) {
+        final int start = buf.position();
+        for (int i = from; i <= buf.remaining() - pattern.length; i++) {
+            int j = 0;
+            while (j < pattern.length && buf.get(start + i + j) == pattern[j]) {
+                j++;
+            }
+            if (j == pattern.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String postProcessSvg(ProcessOptions options, String result, boolean prefix) {
+        final String unprefixed = prefix ? withoutPrefix(result) : result;
+        final String pixelSized = pointsToPixels(unprefixed, options.dpi,
+                options.width, options.height, options.scale);
+        return options.fontAdjust == 1 ? pixelSized : fontAdjusted(pixelSized, options.fontAdjust);
+    }
+
+    private static String withoutPrefix(String svg) {
+        final int pos = svg.indexOf("<svg ");
+        return pos < 0 ? svg : svg.substring(pos);
+    }
+
+    private static String pointsToPixels(String svg, double dpi, int width, int height, double scale) {
+        final Matcher m = SVG_PATTERN.matcher(svg);
+        if (!m.find()) {
+            LOG.warn("Generated SVG has not the expected format. There might be image size problems.");
+            return svg;
+        }
+        return m.replaceFirst("<svg " + svgSize(m, width, height, scale) + m.group("between") + svgScale(m, dpi));
+    }
+
+    private static String svgSize(Matcher m, int width, int height, double scale) {
+        double w = Integer.parseInt(m.group("width"));
+        double h = Integer.parseInt(m.group("height"));
+        if (width > 0 && height > 0) {
+            w = width;
+            h = height;
+        } else if (width > 0) {
+            h *= width / w;
+            w = width;
+        } else if (height > 0) {
+            w *= height / h;
+            h = height;
+        }
+        return "width=\"" + Math.round(w * scale) + "px\" height=\"" + Math.round(h * scale) + "px\"";
+    }
+
+    private static String svgScale(Matcher m, double dpi) {
+        final double pixelScale = m.group("unit").equals("px") ? 1 : Math.round(10000 * dpi / 72) / 10000d;
+        final double scaleX = Double.parseDouble(m.group("scaleX")) / pixelScale;
+        final double scaleY = Double.parseDouble(m.group("scaleY")) / pixelScale;
+        return "transform=\"scale(" + scaleX + " " + scaleY + ")";
+    }
+
+    private static String fontAdjusted(String svg, double fontAdjust) {
+        final Matcher m = FONT_PATTERN.matcher(svg);
+        final StringBuffer s = new StringBuffer();
+        while (m.find()) {
+            String rep;
+            try {
+                rep = "font-size=\"" + Double.parseDouble(m.group(1)) * fontAdjust + "\"";
+            } catch (NumberFormatException e) {
+                rep = m.group();
+            }
+            m.appendReplacement(s, rep);
+        }
+        m.appendTail(s);
+        return s.toString();
+    }
+}
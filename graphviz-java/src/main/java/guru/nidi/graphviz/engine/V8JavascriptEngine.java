@@ -16,12 +16,18 @@
 package guru.nidi.graphviz.engine;
 
 import com.eclipsesource.v8.V8;
+import com.eclipsesource.v8.V8Array;
+import com.eclipsesource.v8.V8Locker;
 import com.eclipsesource.v8.V8RuntimeException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
 
+/**
+ * A V8 runtime is bound to the thread holding its lock.
+ * The lock is only held while executing, so the engine can be used by different threads one after the other.
+ */
 public class V8JavascriptEngine extends AbstractJavascriptEngine {
     private static final Logger LOG = LoggerFactory.getLogger(V8JavascriptEngine.class);
     private final V8 v8;
@@ -46,21 +52,46 @@ public class V8JavascriptEngine extends AbstractJavascriptEngine {
                     : rawMsg;
             resultHandler.setError(msg);
         }, "error");
+        v8.getLocker().release();
         LOG.info("Initialized javascript.");
     }
 
     @Override
     protected String execute(String js) {
+        final V8Locker locker = v8.getLocker();
+        locker.acquire();
         try {
             v8.executeVoidScript(js);
             return resultHandler.waitFor();
         } catch (V8RuntimeException e) {
             throw new GraphvizException("Problem executing javascript", e);
+        } finally {
+            locker.release();
+        }
+    }
+
+    @Override
+    public String executeFunction(String function, String... args) {
+        final V8Locker locker = v8.getLocker();
+        locker.acquire();
+        final V8Array params = new V8Array(v8);
+        try {
+            for (final String arg : args) {
+                params.push(arg);
+            }
+            v8.executeVoidFunction(function, params);
+            return resultHandler.waitFor();
+        } catch (V8RuntimeException e) {
+            throw new GraphvizException("Problem executing javascript", e);
+        } finally {
+            params.release();
+            locker.release();
         }
     }
 
     @Override
     public void close() {
+        v8.getLocker().acquire();
         v8.release(true);
     }
 }
@@ -0,0 +1,55 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.model;
+
+import java.util.HashSet;
+import java.util.Objects;
+
+/**
+ * Structural comparison of graphs, independent of the identity of their nodes and subgraphs.
+ */
+final class GraphStructure {
+    private static final SafeRecursion<MutableGraph> RECURSION = new SafeRecursion<>();
+
+    private GraphStructure() {
+    }
+
+    static boolean equal(MutableGraph a, MutableGraph b) {
+        return RECURSION.recurse(a, true, () -> a.strict == b.strict
+                && a.directed == b.directed
+                && a.cluster == b.cluster
+                && Objects.equals(a.name, b.name)
+                && new HashSet<>(a.nodes).equals(new HashSet<>(b.nodes))
+                && equalSubgraphs(a, b)
+                && Objects.equals(a.links, b.links)
+                && Objects.equals(a.nodeAttrs, b.nodeAttrs)
+                && Objects.equals(a.linkAttrs, b.linkAttrs)
+                && Objects.equals(a.graphAttrs, b.graphAttrs));
+    }
+
+    //subgraphs are few, so comparing each with each is ok
+    private static boolean equalSubgraphs(MutableGraph a, MutableGraph b) {
+        if (a.subgraphs.size() != b.subgraphs.size()) {
+            return false;
+        }
+        for (final MutableGraph subgraph : a.subgraphs) {
+            if (b.subgraphs.stream().noneMatch(s -> equal(subgraph, s))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
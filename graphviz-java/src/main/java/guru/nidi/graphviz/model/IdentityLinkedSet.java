@@ -0,0 +1,93 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.model;
+
+import java.util.*;
+
+/**
+ * An insertion ordered set that compares its elements by identity.
+ * Adding an element does not need its (deep) hash code,
+ * and elements can be modified after they have been added.
+ * Like the key set of an {@link IdentityHashMap}, its equals and hashCode are based on identity.
+ */
+class IdentityLinkedSet<T> extends AbstractSet<T> {
+    private final Map<Identity, T> elements = new LinkedHashMap<>();
+
+    IdentityLinkedSet() {
+    }
+
+    IdentityLinkedSet(Collection<? extends T> elements) {
+        addAll(elements);
+    }
+
+    @Override
+    public boolean add(T element) {
+        return elements.putIfAbsent(new Identity(element), element) == null;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return elements.containsKey(new Identity(o));
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return elements.remove(new Identity(o)) != null;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return elements.values().iterator();
+    }
+
+    @Override
+    public int size() {
+        return elements.size();
+    }
+
+    @Override
+    public void clear() {
+        elements.clear();
+    }
+
+    //like IdentityHashMap.keySet, consistent with the identity based contains used by equals
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (final T element : this) {
+            hash += System.identityHashCode(element);
+        }
+        return hash;
+    }
+
+    private static final class Identity {
+        private final Object target;
+
+        Identity(Object target) {
+            this.target = target;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Identity && ((Identity) o).target == target;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(target);
+        }
+    }
+}
@@ -25,7 +25,7 @@ class ImmutableGraph extends MutableGraph implements Graph {
     }
 
     private ImmutableGraph(boolean strict, boolean directed, boolean cluster, Label name,
-                           LinkedHashSet<MutableNode> nodes, LinkedHashSet<MutableGraph> subgraphs, List<Link> links,
+                           Set<MutableNode> nodes, Set<MutableGraph> subgraphs, List<Link> links,
                            MutableAttributed<MutableGraph, ForNode> nodeAttributes,
                            MutableAttributed<MutableGraph, ForLink> linkAttributes,
                            MutableAttributed<MutableGraph, ForGraph> graphAttributes) {
@@ -39,7 +39,7 @@ class ImmutableGraph extends MutableGraph implements Graph {
 
     static ImmutableGraph copyOfMut(MutableGraph g) {
         return new ImmutableGraph(g.strict, g.directed, g.cluster, g.name,
-                new LinkedHashSet<>(g.nodes), new LinkedHashSet<>(g.subgraphs), new ArrayList<>(g.links),
+                new IdentityLinkedSet<>(g.nodes), new IdentityLinkedSet<>(g.subgraphs), new ArrayList<>(g.links),
                 g.nodeAttrs, g.linkAttrs, g.graphAttrs);
     }
 
@@ -0,0 +1,61 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.model;
+
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Depth first traversal along links.
+ * Uses an explicit stack instead of recursion, so arbitrarily long chains of links can be followed.
+ */
+final class LinkTraversal {
+    private LinkTraversal() {
+    }
+
+    /**
+     * Visit all link sources reachable from root in pre-order.
+     *
+     * @param visit  called for every reached link source, returns if the links of the source should be followed
+     * @param follow returns the link source the given link leads to, or null if it should not be followed
+     */
+    static <T extends LinkSource> void traverse(T root, Predicate<? super T> visit,
+                                                Function<Link, ? extends T> follow) {
+        if (!visit.test(root)) {
+            return;
+        }
+        final Deque<Iterator<Link>> stack = new ArrayDeque<>();
+        stack.push(root.links().iterator());
+        while (!stack.isEmpty()) {
+            final Iterator<Link> links = stack.peek();
+            if (links.hasNext()) {
+                final T next = follow.apply(links.next());
+                if (next != null && visit.test(next)) {
+                    stack.push(next.links().iterator());
+                }
+            } else {
+                stack.pop();
+            }
+        }
+    }
+
+    @Nullable
+    static MutableNode portNode(Link link) {
+        return link.to instanceof ImmutablePortNode ? ((ImmutablePortNode) link.to).node() : null;
+    }
+}
@@ -18,13 +18,15 @@ package guru.nidi.graphviz.model;
 import guru.nidi.graphviz.attribute.*;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
 import java.util.*;
-import java.util.Map.Entry;
+import java.util.function.*;
 
 import static java.util.Arrays.asList;
 
 public class MutableGraph implements LinkSource, LinkTarget {
-    private static final SafeRecursion<MutableGraph> RECURSION = new SafeRecursion<>();
+    private static final SafeRecursion<MutableGraph> EQUALS_RECURSION = new SafeRecursion<>();
+    private static final SafeRecursion<MutableGraph> HASH_RECURSION = new SafeRecursion<>();
     protected boolean strict;
     protected boolean directed;
     protected boolean cluster;
@@ -37,13 +39,13 @@ public class MutableGraph implements LinkSource, LinkTarget {
     protected final MutableAttributed<MutableGraph, ForGraph> graphAttrs;
 
     MutableGraph() {
-        this(false, false, false, Label.of(""), new LinkedHashSet<>(), new LinkedHashSet<>(), new ArrayList<>(),
+        this(false, false, false, Label.of(""), new IdentityLinkedSet<>(), new IdentityLinkedSet<>(), new ArrayList<>(),
                 null, null, null);
         CreationContext.current().ifPresent(ctx -> graphAttrs().add(ctx.graphAttrs()));
     }
 
     protected MutableGraph(boolean strict, boolean directed, boolean cluster, Label name,
-                           LinkedHashSet<MutableNode> nodes, LinkedHashSet<MutableGraph> subgraphs, List<Link> links,
+                           Set<MutableNode> nodes, Set<MutableGraph> subgraphs, List<Link> links,
                            @Nullable Attributes<? extends ForNode> nodeAttrs,
                            @Nullable Attributes<? extends ForLink> linkAttrs,
                            @Nullable Attributes<? extends ForGraph> graphAttrs) {
@@ -61,7 +63,7 @@ public class MutableGraph implements LinkSource, LinkTarget {
 
     public MutableGraph copy() {
         return new MutableGraph(strict, directed, cluster, name,
-                new LinkedHashSet<>(nodes), new LinkedHashSet<>(subgraphs), links,
+                new IdentityLinkedSet<>(nodes), new IdentityLinkedSet<>(subgraphs), links,
                 nodeAttrs, linkAttrs, graphAttrs);
     }
 
@@ -150,12 +152,24 @@ public class MutableGraph implements LinkSource, LinkTarget {
         return this;
     }
 
+    /**
+     * The nodes that have been added directly to this graph.
+     * Nodes are kept by identity: adding two distinct but equal nodes keeps both of them.
+     * They are still serialized as one node.
+     */
     public Collection<MutableNode> rootNodes() {
         return nodes;
     }
 
+    /**
+     * All nodes that can be reached from this graph.
+     * The graph is traversed by identity, the result contains equal nodes only once.
+     */
     public Collection<MutableNode> nodes() {
-        return collectNodes(new HashSet<>(), new HashSet<>()).getKey();
+        final Set<MutableNode> nodes = new IdentityLinkedSet<>();
+        collect(nodes::add, link -> {
+        });
+        return new LinkedHashSet<>(nodes);
     }
 
     public Collection<MutableGraph> graphs() {
@@ -170,36 +184,48 @@ public class MutableGraph implements LinkSource, LinkTarget {
         return links;
     }
 
+    /**
+     * All links that can be reached from this graph, equal links only once.
+     */
     public Collection<Link> edges() {
-        return collectNodes(new HashSet<>(), new HashSet<>()).getValue();
-    }
-
-    private Entry<Set<MutableNode>, Set<Link>> collectNodes(Set<MutableNode> nodes, Set<Link> links) {
-        for (final MutableGraph graph : subgraphs) {
-            graph.collectNodes(nodes, links);
-        }
-        for (final MutableNode node : this.nodes) {
-            collectNodes(node, nodes, links);
-        }
-        collectLinks(this.links, nodes, links);
-        return new AbstractMap.SimpleEntry<>(nodes, links);
+        final Set<MutableNode> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        final Set<Link> links = new LinkedHashSet<>();
+        collect(visited::add, links::add);
+        return links;
     }
 
-    private void collectNodes(MutableNode node, Set<MutableNode> nodes, Set<Link> links) {
-        if (!nodes.contains(node)) {
-            nodes.add(node);
-            collectLinks(node.links(), nodes, links);
+    //visits subgraphs before their parent, in each graph first the nodes and then the links
+    private void collect(Predicate<MutableNode> visitNode, Consumer<Link> visitLink) {
+        final Function<Link, MutableNode> follow = link -> {
+            visitLink.accept(link);
+            return LinkTraversal.portNode(link); //TODO link.to is graph
+        };
+        for (final MutableGraph graph : subgraphsBottomUp()) {
+            for (final MutableNode node : graph.nodes) {
+                LinkTraversal.traverse(node, visitNode, follow);
+            }
+            for (final Link link : graph.links) {
+                final MutableNode node = follow.apply(link);
+                if (node != null) {
+                    LinkTraversal.traverse(node, visitNode, follow);
+                }
+            }
         }
     }
 
-    private void collectLinks(List<Link> edges, Set<MutableNode> nodes, Set<Link> links) {
-        for (final Link link : edges) {
-            links.add(link);
-            if (link.to instanceof ImmutablePortNode) {
-                collectNodes(((ImmutablePortNode) link.to).node(), nodes, links);
+    private List<MutableGraph> subgraphsBottomUp() {
+        final List<MutableGraph> graphs = new ArrayList<>();
+        final Deque<MutableGraph> stack = new ArrayDeque<>();
+        stack.push(this);
+        while (!stack.isEmpty()) {
+            final MutableGraph graph = stack.pop();
+            graphs.add(graph);
+            for (final MutableGraph subgraph : graph.subgraphs) {
+                stack.push(subgraph);
             }
-            //TODO link.to is graph
         }
+        Collections.reverse(graphs);
+        return graphs;
     }
 
     public boolean isStrict() {
@@ -230,6 +256,10 @@ public class MutableGraph implements LinkSource, LinkTarget {
         return graphAttrs;
     }
 
+    /**
+     * Graphs are equal if they have equal attributes and links and contain the same node and subgraph objects.
+     * Use {@link #structurallyEquals(MutableGraph)} to compare graphs built from distinct, but equal nodes.
+     */
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -239,7 +269,7 @@ public class MutableGraph implements LinkSource, LinkTarget {
             return false;
         }
         final MutableGraph that = (MutableGraph) o;
-        return RECURSION.recurse(this, true, () -> strict == that.strict
+        return EQUALS_RECURSION.recurse(this, true, () -> strict == that.strict
                 && directed == that.directed
                 && cluster == that.cluster
                 && Objects.equals(name, that.name)
@@ -253,10 +283,35 @@ public class MutableGraph implements LinkSource, LinkTarget {
 
     @Override
     public int hashCode() {
-        return RECURSION.recurse(this, 0, () -> Objects.hash(
+        return HASH_RECURSION.recurse(this, 0, () -> Objects.hash(
                 strict, directed, cluster, name, nodes, subgraphs, links, nodeAttrs, linkAttrs, graphAttrs));
     }
 
+    /**
+     * Compare the structure of two graphs, independent of the identity of their nodes and subgraphs.
+     * In contrast to equals, which needs the same node and subgraph objects,
+     * this compares the nodes by their content, so it needs their deep hash codes.
+     *
+     * @param other the graph to compare with
+     * @return if both graphs have equal attributes, nodes, subgraphs and links
+     */
+    public boolean structurallyEquals(MutableGraph other) {
+        return GraphStructure.equal(this, other);
+    }
+
+    /**
+     * Write the graph in dot format, without creating the whole string in memory.
+     * Use this to save large graphs to a file or stream.
+     * Rendering with Graphviz.fromGraph still needs the whole string,
+     * as the source is preprocessed, cached and given as string to the engines.
+     *
+     * @param out where to write the graph
+     * @throws IOException if writing fails
+     */
+    public void writeTo(Appendable out) throws IOException {
+        new Serializer(this).serialize(out);
+    }
+
     @Override
     public String toString() {
         return new Serializer(this).serialize();
@@ -25,7 +25,8 @@ import static java.util.Arrays.asList;
 import static java.util.stream.Collectors.joining;
 
 public class MutableNode implements MutableAttributed<MutableNode, ForNode>, LinkSource, LinkTarget {
-    private static final SafeRecursion<MutableNode> RECURSION = new SafeRecursion<>();
+    private static final SafeRecursion<MutableNode> EQUALS_RECURSION = new SafeRecursion<>();
+    private static final SafeRecursion<MutableNode> HASH_RECURSION = new SafeRecursion<>();
     protected Label name;
     protected final LinkList links;
     protected final MutableAttributed<MutableNode, ForNode> attributes;
@@ -189,14 +190,14 @@ public class MutableNode implements MutableAttributed<MutableNode, ForNode>, Lin
             return false;
         }
         final MutableNode node = (MutableNode) o;
-        return RECURSION.recurse(this, true, () -> Objects.equals(name, node.name)
+        return EQUALS_RECURSION.recurse(this, true, () -> Objects.equals(name, node.name)
                 && Objects.equals(links, node.links)
                 && Objects.equals(attributes, node.attributes));
     }
 
     @Override
     public int hashCode() {
-        return RECURSION.recurse(this, 0, () -> Objects.hash(name, links, attributes));
+        return HASH_RECURSION.recurse(this, 0, () -> Objects.hash(name, links, attributes));
     }
 
     @Override
@@ -17,13 +17,19 @@ package guru.nidi.graphviz.model;
 
 import guru.nidi.graphviz.attribute.*;
 
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.stream.Stream;
 
 class Serializer {
+    private static final int FLUSH_SIZE = 8192;
     private final MutableGraph graph;
     private final StringBuilder str;
+    @Nullable
+    private Appendable out;
 
     Serializer(MutableGraph graph) {
         this.graph = graph;
@@ -35,6 +41,33 @@ class Serializer {
         return str.toString();
     }
 
+    /**
+     * Write the graph in chunks to the given output, so the whole serialized graph never has to be in memory.
+     */
+    void serialize(Appendable out) throws IOException {
+        this.out = out;
+        try {
+            toplevelGraph(graph);
+            out.append(str);
+            str.setLength(0);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            this.out = null;
+        }
+    }
+
+    private void flush() {
+        if (out != null && str.length() > FLUSH_SIZE) {
+            try {
+                out.append(str);
+                str.setLength(0);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
     private void toplevelGraph(MutableGraph graph) {
         final boolean useDir = hasDifferentlyDirectedSubgraphs(graph);
         str.append(graph.strict ? "strict " : "").append(graph.directed || useDir ? "digraph " : "graph ");
@@ -60,23 +93,19 @@ class Serializer {
         }
         graphAttrs(graph);
 
-        final List<MutableNode> nodes = new ArrayList<>();
+        final Map<Label, MutableNode> nodesByName = new LinkedHashMap<>();
         final List<MutableGraph> graphs = new ArrayList<>();
         final Collection<LinkSource> linkSources = linkedNodes(graph.nodes);
         linkSources.addAll(linkedNodes(graph.subgraphs));
         for (final LinkSource linkSource : linkSources) {
             if (linkSource instanceof MutableNode) {
                 final MutableNode node = (MutableNode) linkSource;
-                final int i = indexOfName(nodes, node.name);
-                if (i < 0) {
-                    nodes.add(node);
-                } else {
-                    nodes.set(i, node.copy().merge(nodes.get(i)));
-                }
+                nodesByName.merge(node.name, node, (old, n) -> sameOutput(old, n) ? old : n.copy().merge(old));
             } else {
                 graphs.add((MutableGraph) linkSource);
             }
         }
+        final List<MutableNode> nodes = new ArrayList<>(nodesByName.values());
 
         nodes(graph, nodes);
         graphs(graphs, nodes, useDir);
@@ -86,6 +115,34 @@ class Serializer {
         str.append('}');
     }
 
+    //equal nodes which are distinct objects are both visited, they must not be merged into duplicate edges
+    //only the names of the link targets are serialized, so there is no need to compare them deeply
+    private static boolean sameOutput(MutableNode a, MutableNode b) {
+        if (!a.attributes.equals(b.attributes) || a.links.size() != b.links.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.links.size(); i++) {
+            final Link la = a.links.get(i);
+            final Link lb = b.links.get(i);
+            if (!la.attributes.equals(lb.attributes) || !sameTarget(la.from, lb.from) || !sameTarget(la.to, lb.to)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean sameTarget(@Nullable Object a, @Nullable Object b) {
+        if (a instanceof MutableNode && b instanceof MutableNode) {
+            return ((MutableNode) a).name.equals(((MutableNode) b).name);
+        }
+        if (a instanceof ImmutablePortNode && b instanceof ImmutablePortNode) {
+            final ImmutablePortNode pa = (ImmutablePortNode) a;
+            final ImmutablePortNode pb = (ImmutablePortNode) b;
+            return pa.name().equals(pb.name()) && pa.port().equals(pb.port());
+        }
+        return a == b;
+    }
+
     private boolean hasDifferentlyDirectedSubgraphs(MutableGraph graph) {
         return Stream.concat(linkedNodes(graph.nodes).stream(), linkedNodes(graph.subgraphs).stream())
                 .filter(n -> n instanceof MutableGraph)
@@ -99,46 +156,38 @@ class Serializer {
         attributes("edge", graph.linkAttrs);
     }
 
-    private int indexOfName(List<MutableNode> nodes, Label name) {
-        for (int i = 0; i < nodes.size(); i++) {
-            if (nodes.get(i).name.equals(name)) {
-                return i;
-            }
-        }
-        return -1;
-    }
-
     private void attributes(String name, Attributes<?> attributed) {
         if (!attributed.isEmpty()) {
             str.append(name);
             attrs(attributed);
             str.append('\n');
+            flush();
         }
     }
 
     private Collection<LinkSource> linkedNodes(Collection<? extends LinkSource> nodes) {
-        final Set<LinkSource> visited = new LinkedHashSet<>();
+        final Set<LinkSource> visited = new IdentityLinkedSet<>();
         for (final LinkSource node : nodes) {
-            linkedNodes(node, visited);
+            LinkTraversal.traverse(node, visited::add, link -> link.to.asLinkSource());
         }
         return visited;
     }
 
-    private void linkedNodes(LinkSource linkSource, Set<LinkSource> visited) {
-        if (!visited.contains(linkSource)) {
-            visited.add(linkSource);
-            for (final Link link : linkSource.links()) {
-                linkedNodes(link.to.asLinkSource(), visited);
+    private void nodes(MutableGraph graph, List<MutableNode> nodes) {
+        final Set<MutableNode> linked = linkedTargets(nodes);
+        //an unlinked node without attributes equals a root node if the root is just as empty and has the same name
+        final Set<Label> emptyRoots = new HashSet<>();
+        for (final MutableNode node : graph.nodes) {
+            if (node.attributes.isEmpty() && node.links.isEmpty()) {
+                emptyRoots.add(node.name);
             }
         }
-    }
-
-    private void nodes(MutableGraph graph, List<MutableNode> nodes) {
         for (final MutableNode node : nodes) {
             if (!node.attributes.isEmpty()
-                    || (graph.nodes.contains(node) && node.links.isEmpty() && !isLinked(node, nodes))) {
+                    || (node.links.isEmpty() && !linked.contains(node) && emptyRoots.contains(node.name))) {
                 node(node);
                 str.append('\n');
+                flush();
             }
         }
     }
@@ -148,37 +197,41 @@ class Serializer {
         attrs(node.attributes);
     }
 
-    private boolean isLinked(MutableNode node, List<MutableNode> nodes) {
-        for (final MutableNode m : nodes) {
-            for (final Link link : m.links) {
-                if (isNode(link.to, node)) {
-                    return true;
+    private Set<MutableNode> linkedTargets(List<MutableNode> nodes) {
+        final Set<MutableNode> linked = new IdentityLinkedSet<>();
+        for (final MutableNode node : nodes) {
+            for (final Link link : node.links) {
+                if (link.to instanceof MutableNode) {
+                    linked.add((MutableNode) link.to);
+                } else if (link.to instanceof ImmutablePortNode) {
+                    linked.add(((ImmutablePortNode) link.to).node());
                 }
             }
         }
-        return false;
+        return linked;
     }
 
-    private boolean isLinked(MutableGraph graph, List<? extends LinkSource> linkSources) {
-        for (final LinkSource linkSource : linkSources) {
-            for (final Link link : linkSource.links()) {
-                if (link.to.equals(graph)) {
-                    return true;
+    private List<LinkTarget> linkedGraphs(List<? extends LinkSource> nodes, List<? extends LinkSource> graphs) {
+        final List<LinkTarget> linked = new ArrayList<>();
+        for (final List<? extends LinkSource> linkSources : Arrays.asList(nodes, graphs)) {
+            for (final LinkSource linkSource : linkSources) {
+                for (final Link link : linkSource.links()) {
+                    if (link.to instanceof MutableGraph) {
+                        linked.add(link.to);
+                    }
                 }
             }
         }
-        return false;
-    }
-
-    private boolean isNode(LinkTarget target, MutableNode node) {
-        return target == node || (target instanceof ImmutablePortNode && ((ImmutablePortNode) target).node() == node);
+        return linked;
     }
 
     private void graphs(List<MutableGraph> graphs, List<MutableNode> nodes, boolean useDir) {
+        final List<LinkTarget> linked = linkedGraphs(nodes, graphs);
         for (final MutableGraph graph : graphs) {
-            if (graph.links.isEmpty() && !isLinked(graph, nodes) && !isLinked(graph, graphs)) {
+            if (graph.links.isEmpty() && !linked.contains(graph)) {
                 subGraph(graph, useDir);
                 str.append('\n');
+                flush();
             }
         }
     }
@@ -191,6 +244,7 @@ class Serializer {
                 linkTarget(link.to, useDir);
                 attrs(link.attributes);
                 str.append('\n');
+                flush();
             }
         }
     }
@@ -0,0 +1,122 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.parse;
+
+import guru.nidi.graphviz.attribute.Label;
+import guru.nidi.graphviz.attribute.validate.AttributeValidator.Scope;
+import guru.nidi.graphviz.model.Compass;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+
+/**
+ * Receives the elements of a graph while it is parsed,
+ * without building a {@link guru.nidi.graphviz.model.MutableGraph}.
+ * Attribute values are given as Labels to distinguish HTML and normal values.
+ */
+public interface DotHandler {
+    default void onGraphStart(boolean strict, boolean directed, @Nullable Label name) {
+    }
+
+    default void onGraphEnd() {
+    }
+
+    default void onSubgraphStart(@Nullable Label name) {
+    }
+
+    /**
+     * The end of a subgraph.
+     *
+     * @param standalone false if the subgraph is part of an edge statement
+     * @return an arbitrary value that is given back in {@link Endpoint#subgraph()} if the subgraph is part of an edge
+     */
+    @Nullable
+    default Object onSubgraphEnd(boolean standalone) {
+        return null;
+    }
+
+    /**
+     * An attribute statement like {@code node [color=red]} or {@code color=red}.
+     */
+    default void onAttributes(Scope scope, Map<String, Label> attributes) {
+    }
+
+    default void onNode(Label name, Map<String, Label> attributes) {
+    }
+
+    default void onEdge(Endpoint from, Endpoint to, Map<String, Label> attributes) {
+    }
+
+    /**
+     * One end of an edge, either a node with an optional port or a subgraph.
+     */
+    final class Endpoint {
+        @Nullable
+        private final Label node;
+        @Nullable
+        private final String record;
+        @Nullable
+        private final Compass compass;
+        @Nullable
+        private final Object subgraph;
+
+        private Endpoint(@Nullable Label node, @Nullable String record, @Nullable Compass compass,
+                         @Nullable Object subgraph) {
+            this.node = node;
+            this.record = record;
+            this.compass = compass;
+            this.subgraph = subgraph;
+        }
+
+        static Endpoint ofNode(Label node, @Nullable String record, @Nullable Compass compass) {
+            return new Endpoint(node, record, compass, null);
+        }
+
+        static Endpoint ofSubgraph(@Nullable Object subgraph) {
+            return new Endpoint(null, null, null, subgraph);
+        }
+
+        public boolean isSubgraph() {
+            return node == null;
+        }
+
+        @Nullable
+        public Label node() {
+            return node;
+        }
+
+        @Nullable
+        public String record() {
+            return record;
+        }
+
+        @Nullable
+        public Compass compass() {
+            return compass;
+        }
+
+        @Nullable
+        public Object subgraph() {
+            return subgraph;
+        }
+
+        @Override
+        public String toString() {
+            return isSubgraph() ? "subgraph " + subgraph : node + (record == null ? "" : ":" + record)
+                    + (compass == null ? "" : ":" + compass);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.parse;
+
+import guru.nidi.graphviz.attribute.Label;
+import guru.nidi.graphviz.attribute.validate.AttributeValidator.Scope;
+import guru.nidi.graphviz.model.*;
+
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.Map.Entry;
+
+import static guru.nidi.graphviz.model.Factory.mutGraph;
+import static guru.nidi.graphviz.model.Factory.mutNode;
+
+/**
+ * Builds a MutableGraph from parser events.
+ * Every (sub)graph gets its own scope of nodes and default attributes, like in dot.
+ * Nodes and links are created in a fresh CreationContext, so a context of the caller does not affect the result.
+ */
+final class GraphBuilder implements DotHandler, AutoCloseable {
+    private final Deque<GraphScope> scopes = new ArrayDeque<>();
+    @Nullable
+    private MutableGraph graph;
+
+    MutableGraph graph() {
+        if (graph == null) {
+            throw new IllegalStateException("No graph has been parsed.");
+        }
+        return graph;
+    }
+
+    @Override
+    public void onGraphStart(boolean strict, boolean directed, @Nullable Label name) {
+        final MutableGraph g = newGraph().setStrict(strict).setDirected(directed);
+        if (name != null) {
+            g.setName(name.toString());
+        }
+        scopes.push(new GraphScope(g));
+    }
+
+    @Override
+    public void onGraphEnd() {
+        graph = scopes.pop().graph;
+    }
+
+    @Override
+    public void onSubgraphStart(@Nullable Label name) {
+        final MutableGraph sub = newGraph().setDirected(current().isDirected());
+        if (name != null) {
+            final String value = name.toString();
+            if (value.startsWith("cluster_")) {
+                sub.setName(value.substring(8));
+                sub.setCluster(true);
+            } else {
+                sub.setName(value);
+            }
+        }
+        scopes.push(new GraphScope(sub));
+    }
+
+    @Override
+    public Object onSubgraphEnd(boolean standalone) {
+        final MutableGraph sub = scopes.pop().graph;
+        if (standalone) {
+            current().add(sub);
+        }
+        return sub;
+    }
+
+    @Override
+    public void onAttributes(Scope scope, Map<String, Label> attributes) {
+        if (scope == Scope.NODE) {
+            scope().nodeAttrs.putAll(values(attributes));
+        } else if (scope == Scope.EDGE) {
+            scope().linkAttrs.putAll(values(attributes));
+        } else {
+            applyAttributes(current().graphAttrs(), attributes);
+        }
+    }
+
+    @Override
+    public void onNode(Label name, Map<String, Label> attributes) {
+        final MutableNode node = node(name);
+        applyAttributes(node, attributes);
+        current().add(node);
+    }
+
+    @Override
+    public void onEdge(Endpoint from, Endpoint to, Map<String, Label> attributes) {
+        final LinkSource source = linkSource(from);
+        final LinkTarget target = (LinkTarget) linkSource(to);
+        final Map<String, Object> attrs = new LinkedHashMap<>(scope().linkAttrs);
+        attrs.putAll(values(attributes));
+        CreationContext.use(ctx -> addLink(source, target, attrs));
+        current().add(source);
+    }
+
+    private static boolean addLink(LinkSource source, LinkTarget target, Map<String, Object> attributes) {
+        Link link = source.linkTo(target);
+        for (final Entry<String, Object> attr : attributes.entrySet()) {
+            link = link.with(attr.getKey(), attr.getValue());
+        }
+        return source.links().add(link);
+    }
+
+    private LinkSource linkSource(Endpoint endpoint) {
+        final Label node = endpoint.node();
+        return node == null
+                ? (MutableGraph) endpoint.subgraph()
+                : node(node).port(endpoint.record(), endpoint.compass());
+    }
+
+    private static MutableGraph newGraph() {
+        return CreationContext.use(ctx -> mutGraph());
+    }
+
+    //the node with the given name in the current scope, nodes of outer scopes are not shared
+    private MutableNode node(Label name) {
+        final GraphScope scope = scope();
+        return scope.nodes.computeIfAbsent(name.value(), n -> {
+            final MutableNode node = CreationContext.use(ctx -> mutNode(name));
+            scope.nodeAttrs.forEach(node::add);
+            return node;
+        });
+    }
+
+    private void applyAttributes(MutableAttributed<?, ?> attributed, Map<String, Label> attributes) {
+        values(attributes).forEach(attributed::add);
+    }
+
+    private static Map<String, Object> values(Map<String, Label> attributes) {
+        final Map<String, Object> values = new LinkedHashMap<>();
+        for (final Entry<String, Label> attr : attributes.entrySet()) {
+            final String key = attr.getKey();
+            if ("label".equals(key) || "xlabel".equals(key) || "headlabel".equals(key) || "taillabel".equals(key)) {
+                values.put(key, attr.getValue());
+            } else {
+                values.put(key, attr.getValue().value());
+            }
+        }
+        return values;
+    }
+
+    private MutableGraph current() {
+        return scope().graph;
+    }
+
+    private GraphScope scope() {
+        final GraphScope current = scopes.peek();
+        if (current == null) {
+            throw new IllegalStateException("Not inside a graph.");
+        }
+        return current;
+    }
+
+    /**
+     * Forget graphs that have not been completely parsed.
+     */
+    @Override
+    public void close() {
+        scopes.clear();
+    }
+
+    private static final class GraphScope {
+        final MutableGraph graph;
+        final Map<String, MutableNode> nodes = new HashMap<>();
+        final Map<String, Object> nodeAttrs = new LinkedHashMap<>();
+        final Map<String, Object> linkAttrs = new LinkedHashMap<>();
+
+        GraphScope(MutableGraph graph) {
+            this.graph = graph;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.parse;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits UTF-8 encoded content containing multiple graphs at the closing brace of each top level graph.
+ * Quoted strings, HTML strings and comments are skipped. As all syntax relevant characters are ASCII,
+ * the bytes can be scanned without decoding them.
+ */
+final class GraphSplitter {
+    private final ByteBuffer content;
+    private final int limit;
+    private final List<ByteBuffer> graphs = new ArrayList<>();
+    private int pos;
+    private int start;
+    private int depth;
+    private boolean hasContent;
+
+    private GraphSplitter(ByteBuffer content) {
+        this.content = content;
+        limit = content.limit();
+        pos = content.position();
+        start = pos;
+    }
+
+    static List<ByteBuffer> split(ByteBuffer content) {
+        return new GraphSplitter(content).split();
+    }
+
+    private List<ByteBuffer> split() {
+        boolean lineStart = true;
+        while (pos < limit) {
+            final byte b = content.get(pos++);
+            if (b == '/' && isCommentStart()) {
+                comment();
+            } else if (b == '#' && lineStart) {
+                skipLine();
+            } else if (b > ' ') {
+                hasContent = true;
+                token(b);
+            }
+            lineStart = b == '\n';
+        }
+        if (hasContent) {
+            graphs.add(slice(start, limit));
+        }
+        return graphs;
+    }
+
+    private void token(byte b) {
+        if (b == '"') {
+            quoted();
+        } else if (b == '<') {
+            html();
+        } else if (b == '{') {
+            depth++;
+        } else if (b == '}' && --depth == 0) {
+            graphs.add(slice(start, pos));
+            start = pos;
+            hasContent = false;
+        }
+    }
+
+    private boolean isCommentStart() {
+        return pos < limit && (content.get(pos) == '/' || content.get(pos) == '*');
+    }
+
+    private void comment() {
+        if (content.get(pos++) == '/') {
+            skipLine();
+        } else {
+            while (pos + 1 < limit && !(content.get(pos) == '*' && content.get(pos + 1) == '/')) {
+                pos++;
+            }
+            pos += 2;
+        }
+    }
+
+    private void skipLine() {
+        while (pos < limit && content.get(pos) != '\n') {
+            pos++;
+        }
+    }
+
+    private void quoted() {
+        while (pos < limit) {
+            final byte b = content.get(pos++);
+            if (b == '\\') {
+                pos++;
+            } else if (b == '"') {
+                return;
+            }
+        }
+    }
+
+    private void html() {
+        int level = 1;
+        while (pos < limit && level > 0) {
+            final byte b = content.get(pos++);
+            if (b == '<') {
+                level++;
+            } else if (b == '>') {
+                level--;
+            }
+        }
+    }
+
+    private ByteBuffer slice(int from, int to) {
+        final ByteBuffer slice = content.duplicate();
+        slice.position(from);
+        slice.limit(to);
+        return slice.slice();
+    }
+}
@@ -16,32 +16,48 @@
 package guru.nidi.graphviz.parse;
 
 import javax.annotation.Nullable;
-import java.io.*;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
 
 import static guru.nidi.graphviz.parse.Token.*;
-import static java.util.Locale.ENGLISH;
 
+/**
+ * Reads the input through a char buffer.
+ * Identifiers are collected in a reused buffer, keywords are recognized without creating a string
+ * and recurring identifiers share the same string instance.
+ */
 class Lexer {
-    private static final Map<String, Integer> KEYWORDS = new HashMap<>();
-
-    static {
-        KEYWORDS.put("strict", Token.STRICT);
-        KEYWORDS.put("graph", Token.GRAPH);
-        KEYWORDS.put("digraph", Token.DIGRAPH);
-        KEYWORDS.put("node", Token.NODE);
-        KEYWORDS.put("edge", Token.EDGE);
-        KEYWORDS.put("subgraph", Token.SUBGRAPH);
-    }
-
     private static final char CH_EOF = (char) -1;
-    private final PushbackReader in;
+    private static final int NO_PUSHBACK = -2;
+    private static final int BUFFER_SIZE = 8192;
+    private static final int CACHE_SIZE = 1024;
+    private static final int MAX_CACHED_LENGTH = 32;
+    private static final Token TOKEN_EOF = new Token(EOF, CH_EOF);
+    private static final Token TOKEN_SEMICOLON = new Token(SEMICOLON, ';');
+    private static final Token TOKEN_COMMA = new Token(COMMA, ',');
+    private static final Token TOKEN_BRACE_OPEN = new Token(BRACE_OPEN, '{');
+    private static final Token TOKEN_BRACE_CLOSE = new Token(BRACE_CLOSE, '}');
+    private static final Token TOKEN_EQUAL = new Token(EQUAL, '=');
+    private static final Token TOKEN_BRACKET_OPEN = new Token(BRACKET_OPEN, '[');
+    private static final Token TOKEN_BRACKET_CLOSE = new Token(BRACKET_CLOSE, ']');
+    private static final Token TOKEN_COLON = new Token(COLON, ':');
+    private static final Token TOKEN_MINUS_MINUS = new Token(MINUS_MINUS, "--");
+    private static final Token TOKEN_ARROW = new Token(ARROW, "->");
+
+    private final Reader in;
+    private final char[] buf = new char[BUFFER_SIZE];
+    private int bufPos;
+    private int bufLen;
+    private int pushback = NO_PUSHBACK;
+    private char[] text = new char[64];
+    private int textLen;
+    private final String[] cache = new String[CACHE_SIZE];
     private char ch;
     Position pos;
 
     Lexer(Reader in, String name) throws IOException {
-        this.in = new PushbackReader(in);
+        this.in = in;
         pos = new Position(name);
         readChar();
     }
@@ -59,30 +75,30 @@ class Lexer {
     private Token symbol() throws IOException {
         switch (ch) {
             case CH_EOF:
-                return new Token(EOF, ch);
+                return TOKEN_EOF;
             case ';':
-                return new Token(SEMICOLON, ch);
+                return TOKEN_SEMICOLON;
             case ',':
-                return new Token(COMMA, ch);
+                return TOKEN_COMMA;
             case '{':
-                return new Token(BRACE_OPEN, ch);
+                return TOKEN_BRACE_OPEN;
             case '}':
-                return new Token(BRACE_CLOSE, ch);
+                return TOKEN_BRACE_CLOSE;
             case '=':
-                return new Token(EQUAL, ch);
+                return TOKEN_EQUAL;
             case '[':
-                return new Token(BRACKET_OPEN, ch);
+                return TOKEN_BRACKET_OPEN;
             case ']':
-                return new Token(BRACKET_CLOSE, ch);
+                return TOKEN_BRACKET_CLOSE;
             case ':':
-                return new Token(COLON, ch);
+                return TOKEN_COLON;
             case '-':
                 final char next = readRawChar();
                 if (next == '-') {
-                    return new Token(MINUS_MINUS, "--");
+                    return TOKEN_MINUS_MINUS;
                 }
                 if (next == '>') {
-                    return new Token(ARROW, "->");
+                    return TOKEN_ARROW;
                 }
                 unread('-', next);
                 return null;
@@ -99,13 +115,13 @@ class Lexer {
     }
 
     private Token numeral() throws IOException {
-        final StringBuilder s = new StringBuilder();
+        textLen = 0;
         do {
-            s.append(ch);
+            append(ch);
             readRawChar();
         } while (ch == '.' || (ch >= '0' && ch <= '9'));
         sync();
-        return new Token(ID, SUB_NUMERAL, s.toString());
+        return new Token(ID, SUB_NUMERAL, text());
     }
 
     private Token ident() throws IOException {
@@ -126,36 +142,36 @@ class Lexer {
     }
 
     private Token quotedIdent() throws IOException {
-        final StringBuilder s = new StringBuilder();
+        textLen = 0;
         readRawChar();
         while (ch != '"' && ch != CH_EOF) {
-            s.append(ch);
+            append(ch);
             readRawChar();
-            if (ch == '"' && s.charAt(s.length() - 1) == '\\') {
-                s.replace(s.length() - 1, s.length(), "\"");
+            if (ch == '"' && text[textLen - 1] == '\\') {
+                text[textLen - 1] = '"';
                 readRawChar();
             }
-            if (ch == '\n' && s.charAt(s.length() - 1) == '\\') {
-                s.delete(s.length() - 1, s.length());
+            if (ch == '\n' && text[textLen - 1] == '\\') {
+                textLen--;
                 readRawChar();
             }
         }
         readChar();
-        return new Token(ID, SUB_QUOTED, s.toString());
+        return new Token(ID, SUB_QUOTED, text());
     }
 
     private Token htmlIdent() throws IOException {
-        final StringBuilder s = new StringBuilder();
+        textLen = 0;
         int level = 1;
         readRawChar();
         level = htmlLevel(level, ch);
         while ((ch != '>' || level > 0) && ch != CH_EOF) {
-            s.append(ch);
+            append(ch);
             readRawChar();
             level = htmlLevel(level, ch);
         }
         readChar();
-        return new Token(ID, SUB_HTML, s.toString());
+        return new Token(ID, SUB_HTML, text());
     }
 
     private int htmlLevel(int level, char ch) {
@@ -169,14 +185,76 @@ class Lexer {
     }
 
     private Token simpleIdent() throws IOException {
-        final StringBuilder s = new StringBuilder();
+        textLen = 0;
         do {
-            s.append(ch);
+            append(ch);
             readRawChar();
         } while ((isIdentStart() || (ch >= '0' && ch <= '9')) && ch != CH_EOF);
         sync();
-        final Integer key = KEYWORDS.get(s.toString().toLowerCase(ENGLISH));
-        return key == null ? new Token(ID, SUB_SIMPLE, s.toString()) : new Token(key, s.toString());
+        final int key = keyword();
+        return key == ID ? new Token(ID, SUB_SIMPLE, text()) : new Token(key, text());
+    }
+
+    private int keyword() {
+        switch (textLen) {
+            case 4:
+                return isText("node") ? NODE : isText("edge") ? EDGE : ID;
+            case 5:
+                return isText("graph") ? GRAPH : ID;
+            case 6:
+                return isText("strict") ? STRICT : ID;
+            case 7:
+                return isText("digraph") ? DIGRAPH : ID;
+            case 8:
+                return isText("subgraph") ? SUBGRAPH : ID;
+            default:
+                return ID;
+        }
+    }
+
+    //case insensitive, keyword must be lower case
+    private boolean isText(String keyword) {
+        for (int i = 0; i < textLen; i++) {
+            final char c = text[i];
+            if (c != keyword.charAt(i) && (c < 'A' || c > 'Z' || c + ('a' - 'A') != keyword.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void append(char c) {
+        if (textLen == text.length) {
+            text = Arrays.copyOf(text, text.length * 2);
+        }
+        text[textLen++] = c;
+    }
+
+    private String text() {
+        if (textLen > MAX_CACHED_LENGTH) {
+            return new String(text, 0, textLen);
+        }
+        int hash = 0;
+        for (int i = 0; i < textLen; i++) {
+            hash = 31 * hash + text[i];
+        }
+        final int index = (hash ^ (hash >>> 16)) & (CACHE_SIZE - 1);
+        final String cached = cache[index];
+        if (cached != null && cached.length() == textLen && cachedEqualsText(cached)) {
+            return cached;
+        }
+        final String value = new String(text, 0, textLen);
+        cache[index] = value;
+        return value;
+    }
+
+    private boolean cachedEqualsText(String cached) {
+        for (int i = 0; i < textLen; i++) {
+            if (cached.charAt(i) != text[i]) {
+                return false;
+            }
+        }
+        return true;
     }
 
     private void sync() throws IOException {
@@ -225,12 +303,25 @@ class Lexer {
 
     private char readRawChar() throws IOException {
         pos.newChar();
-        return ch = (char) in.read();
+        if (pushback != NO_PUSHBACK) {
+            ch = (char) pushback;
+            pushback = NO_PUSHBACK;
+            return ch;
+        }
+        if (bufPos == bufLen) {
+            bufPos = 0;
+            bufLen = in.read(buf, 0, buf.length);
+            if (bufLen <= 0) {
+                bufLen = 0;
+                return ch = CH_EOF;
+            }
+        }
+        return ch = buf[bufPos++];
     }
 
-    private void unread(char before, char next) throws IOException {
+    private void unread(char before, char next) {
         pos.lastChar();
         ch = before;
-        in.unread(next);
+        pushback = next;
     }
 }
@@ -0,0 +1,105 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.parse;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.*;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Decodes an UTF-8 file that is memory mapped in chunks, or a part of an already mapped file.
+ * The content is decoded directly into the buffer of the reader, so only the currently mapped chunk
+ * and no copy of the whole file is held in memory.
+ */
+class MappedFileReader extends Reader {
+    private static final int CHUNK_SIZE = 64 * 1024 * 1024;
+
+    @Nullable
+    private final FileChannel channel;
+    private final long size;
+    private final int chunkSize;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private ByteBuffer chunk;
+    private long chunkStart;
+    private boolean flushed;
+
+    MappedFileReader(Path path) throws IOException {
+        this(path, CHUNK_SIZE);
+    }
+
+    MappedFileReader(Path path, int chunkSize) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        size = channel.size();
+        this.chunkSize = chunkSize;
+        chunk = map(0);
+    }
+
+    MappedFileReader(ByteBuffer content) {
+        channel = null;
+        chunk = content.slice();
+        size = chunk.limit();
+        chunkSize = chunk.limit();
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        final CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+        while (out.position() == off && !flushed) {
+            final boolean last = chunkStart + chunk.limit() == size;
+            final CoderResult result = decoder.decode(chunk, out, last);
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (result.isUnderflow()) {
+                if (last) {
+                    decoder.flush(out);
+                    flushed = true;
+                } else {
+                    //an incomplete char at the end of the chunk is decoded again with the next chunk
+                    chunk = map(chunkStart + chunk.position());
+                }
+            }
+        }
+        final int read = out.position() - off;
+        return read == 0 ? -1 : read;
+    }
+
+    private ByteBuffer map(long start) throws IOException {
+        if (channel == null) {
+            throw new IllegalStateException("Content is not mapped from a file.");
+        }
+        chunkStart = start;
+        return channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(chunkSize, size - start));
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
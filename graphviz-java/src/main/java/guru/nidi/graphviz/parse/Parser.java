@@ -23,44 +23,91 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
 import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 public final class Parser {
     private static final Logger LOG = LoggerFactory.getLogger(Parser.class);
+
+    /**
+     * When the attributes of a graph are validated.
+     */
+    public enum Validation {
+        /**
+         * Validate each attribute as soon as it is parsed (the default).
+         */
+        EAGER,
+        /**
+         * Validate all attributes after the graph has been parsed.
+         */
+        LAZY,
+        /**
+         * Like LAZY, but validate the attributes in parallel.
+         */
+        LAZY_PARALLEL,
+        /**
+         * Do not validate attributes at all.
+         */
+        NONE
+    }
+
     @Nullable
     private final String engine;
     @Nullable
     private final String format;
     private final Consumer<ValidatorMessage> messageConsumer;
+    private final Validation validation;
 
     public Parser() {
         this(null, null, msg -> LOG.info(String.format("%-7s %-15.15s at %3d:%-3d %s",
-                msg.severity, msg.attribute, msg.line, msg.column, msg.message)));
+                msg.severity, msg.attribute, msg.line, msg.column, msg.message)), Validation.EAGER);
     }
 
-    private Parser(@Nullable String engine, @Nullable String format, Consumer<ValidatorMessage> messageConsumer) {
+    private Parser(@Nullable String engine, @Nullable String format, Consumer<ValidatorMessage> messageConsumer,
+                   Validation validation) {
         this.engine = engine;
         this.format = format;
         this.messageConsumer = messageConsumer;
+        this.validation = validation;
     }
 
     public Parser forEngine(@Nullable String engine) {
-        return new Parser(engine, format, messageConsumer);
+        return new Parser(engine, format, messageConsumer, validation);
     }
 
     public Parser forFormat(@Nullable String format) {
-        return new Parser(engine, format, messageConsumer);
+        return new Parser(engine, format, messageConsumer, validation);
     }
 
     public Parser messageConsumer(Consumer<ValidatorMessage> messageConsumer) {
-        return new Parser(engine, format, messageConsumer);
+        return new Parser(engine, format, messageConsumer, validation);
+    }
+
+    public Parser validation(Validation validation) {
+        return new Parser(engine, format, messageConsumer, validation);
     }
 
     public MutableGraph read(File file) throws IOException {
         return read(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), file.getName());
     }
 
+    /**
+     * Read an UTF-8 encoded file by memory mapping it.
+     * Large files are read with bounded heap usage and without copying the whole file into memory.
+     */
+    public MutableGraph read(Path path) throws IOException {
+        try (final Reader reader = new MappedFileReader(path)) {
+            return read(reader, path.getFileName().toString());
+        }
+    }
+
     public MutableGraph read(InputStream is) throws IOException {
         return read(new InputStreamReader(is, StandardCharsets.UTF_8), "<input stream>");
     }
@@ -70,6 +117,66 @@ public final class Parser {
     }
 
     public MutableGraph read(Reader dot, String name) throws IOException {
-        return new ParserImpl(new Lexer(dot, name), new AttributeValidator(engine, format), messageConsumer).parse();
+        try (final GraphBuilder builder = new GraphBuilder()) {
+            read(dot, name, builder);
+            return builder.graph();
+        }
+    }
+
+    /**
+     * Parse a graph and report its elements to the handler, without building a MutableGraph.
+     */
+    public void read(Path path, DotHandler handler) throws IOException {
+        try (final Reader reader = new MappedFileReader(path)) {
+            read(reader, path.getFileName().toString(), handler);
+        }
+    }
+
+    public void read(String dot, DotHandler handler) throws IOException {
+        read(new StringReader(dot), "<string>", handler);
+    }
+
+    public void read(Reader dot, String name, DotHandler handler) throws IOException {
+        final AttributeValidator validator = new AttributeValidator(engine, format);
+        final ValidationPass pass = new ValidationPass(validation, validator, messageConsumer);
+        new ParserImpl(new Lexer(dot, name), pass, handler).parse();
+        pass.finish();
+    }
+
+    /**
+     * Read a file containing multiple graphs.
+     * The graphs are parsed in parallel, the message consumer must therefore be thread safe.
+     * Parsing happens lazily when the stream is consumed.
+     * Parse errors are thrown as ParserException, I/O errors as UncheckedIOException.
+     *
+     * @param ordered if the stream should keep the order of the graphs in the file
+     */
+    public Stream<MutableGraph> readAll(Path path, boolean ordered) throws IOException {
+        final String name = path.getFileName().toString();
+        final List<ByteBuffer> graphs = GraphSplitter.split(map(path));
+        final Stream<MutableGraph> stream = IntStream.range(0, graphs.size()).parallel()
+                .mapToObj(i -> readUnchecked(new MappedFileReader(graphs.get(i)), name + "#" + (i + 1)));
+        return ordered ? stream : stream.unordered();
+    }
+
+    public Stream<MutableGraph> readAll(Path path) throws IOException {
+        return readAll(path, true);
+    }
+
+    private MutableGraph readUnchecked(Reader dot, String name) {
+        try {
+            return read(dot, name);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static ByteBuffer map(Path path) throws IOException {
+        try (final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("File " + path + " is too big to be read with readAll.");
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
     }
 }
@@ -15,65 +15,61 @@
  */
 package guru.nidi.graphviz.parse;
 
-import guru.nidi.graphviz.attribute.Attributed;
 import guru.nidi.graphviz.attribute.Label;
-import guru.nidi.graphviz.attribute.validate.AttributeValidator;
 import guru.nidi.graphviz.attribute.validate.AttributeValidator.Scope;
-import guru.nidi.graphviz.attribute.validate.ValidatorMessage;
-import guru.nidi.graphviz.model.*;
+import guru.nidi.graphviz.model.Compass;
+import guru.nidi.graphviz.parse.DotHandler.Endpoint;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.util.*;
-import java.util.function.Consumer;
 
-import static guru.nidi.graphviz.model.Factory.mutGraph;
-import static guru.nidi.graphviz.model.Factory.mutNode;
 import static guru.nidi.graphviz.parse.Token.*;
 
 final class ParserImpl {
     private Token token;
     private final Lexer lexer;
-    private final Consumer<ValidatorMessage> messageConsumer;
-    private final AttributeValidator validator;
+    private final ValidationPass validation;
+    private final DotHandler handler;
+    private boolean directed;
 
-    ParserImpl(Lexer lexer, AttributeValidator validator,
-               Consumer<ValidatorMessage> messageConsumer) throws IOException {
+    ParserImpl(Lexer lexer, ValidationPass validation, DotHandler handler) throws IOException {
         this.lexer = lexer;
-        this.validator = validator;
-        this.messageConsumer = messageConsumer;
+        this.validation = validation;
+        this.handler = handler;
         token = nextToken();
     }
 
-    MutableGraph parse() {
-        return CreationContext.use(ctx -> {
-            final MutableGraph graph = mutGraph();
-            if (token.type == STRICT) {
-                graph.setStrict(true);
-                nextToken();
-            }
-            if (token.type == DIGRAPH) {
-                graph.setDirected(true);
-            } else if (token.type != GRAPH) {
-                fail("'graph' or 'digraph' expected");
-            }
+    void parse() throws IOException {
+        boolean strict = false;
+        if (token.type == STRICT) {
+            strict = true;
             nextToken();
-            if (token.type == ID) {
-                graph.setName(label(token).toString());
-                nextToken();
-            }
-            statementList(graph, false);
-            assertToken(EOF);
-            return deduplicateNodes(graph);
-        });
+        }
+        if (token.type == DIGRAPH) {
+            directed = true;
+        } else if (token.type != GRAPH) {
+            fail("'graph' or 'digraph' expected");
+        }
+        nextToken();
+        Label name = null;
+        if (token.type == ID) {
+            name = label(token);
+            nextToken();
+        }
+        handler.onGraphStart(strict, directed, name);
+        statementList(false);
+        assertToken(EOF);
+        handler.onGraphEnd();
     }
 
     private Label label(Token token) {
         return token.subtype == SUB_HTML ? Label.html(token.value) : Label.of(token.value);
     }
 
-    private void statementList(MutableGraph graph, boolean isSub) throws IOException {
+    private void statementList(boolean isSub) throws IOException {
         assertToken(BRACE_OPEN);
-        while (statement(graph, isSub)) {
+        while (statement(isSub)) {
             if (token.type == SEMICOLON) {
                 nextToken();
             }
@@ -81,83 +77,70 @@ final class ParserImpl {
         assertToken(BRACE_CLOSE);
     }
 
-    private boolean statement(MutableGraph graph, boolean isSub) throws IOException {
+    private boolean statement(boolean isSub) throws IOException {
         final Token base = token;
         switch (base.type) {
             case ID:
-                final Position pos = lexer.pos.copy(-base.value.length());
+                final Position pos = position(base);
                 nextToken();
                 if (token.type == EQUAL) {
                     final Token value = nextToken(ID);
                     final Scope scope = isSub ? Scope.SUB_GRAPH : Scope.GRAPH;
                     validate(base, value, scope, pos);
-                    applyMutableAttributes(graph.graphAttrs(), Arrays.asList(base, value));
+                    handler.onAttributes(scope, Collections.singletonMap(base.value, label(value)));
                     nextToken();
                 } else {
-                    final PortNode nodeId = nodeId(base);
-                    if (token.type == MINUS_MINUS || token.type == ARROW) {
-                        edgeStatement(graph, nodeId);
+                    final Endpoint nodeId = nodeId(base);
+                    if (isEdgeOp()) {
+                        edgeStatement(nodeId);
                     } else {
-                        nodeStatement(graph, nodeId);
+                        nodeStatement(nodeId);
                     }
                 }
                 return true;
             case SUBGRAPH:
             case BRACE_OPEN:
-                final MutableGraph sub = subgraph(graph.isDirected());
-                if (token.type == MINUS_MINUS || token.type == ARROW) {
-                    edgeStatement(graph, sub);
-                } else {
-                    graph.add(sub);
+                final Endpoint sub = subgraph(false);
+                if (isEdgeOp()) {
+                    edgeStatement(sub);
                 }
                 return true;
             case GRAPH:
             case NODE:
             case EDGE:
-                attributeStatement(graph, isSub);
+                attributeStatement(isSub);
                 return true;
             default:
                 return false;
         }
     }
 
-    private MutableGraph subgraph(boolean directed) {
-        return CreationContext.use(ctx -> {
-            final MutableGraph sub = mutGraph().setDirected(directed);
-            if (token.type == SUBGRAPH) {
-                nextToken();
-                if (token.type == ID) {
-                    final String name = label(token).toString();
-                    if (name.startsWith("cluster_")) {
-                        sub.setName(name.substring(8));
-                        sub.setCluster(true);
-                    } else {
-                        sub.setName(name);
-                    }
-                    nextToken();
-                }
-            }
-            statementList(sub, true);
-            return deduplicateNodes(sub);
-        });
+    private boolean isEdgeOp() {
+        return token.type == MINUS_MINUS || token.type == ARROW;
     }
 
-    //we add nodes (and others?) which possibly change afterwards
-    //-> the hashcode changes -> same node is multiple times in the set of nodes
-    //copy() normalizes this
-    private MutableGraph deduplicateNodes(MutableGraph g) {
-        return g.copy();
+    private Endpoint subgraph(boolean inEdge) throws IOException {
+        Label name = null;
+        if (token.type == SUBGRAPH) {
+            nextToken();
+            if (token.type == ID) {
+                name = label(token);
+                nextToken();
+            }
+        }
+        handler.onSubgraphStart(name);
+        statementList(true);
+        return Endpoint.ofSubgraph(handler.onSubgraphEnd(!inEdge && !isEdgeOp()));
     }
 
-    private void edgeStatement(MutableGraph graph, LinkSource linkSource)
-            throws IOException {
-        final List<LinkSource> points = new ArrayList<>();
-        points.add(linkSource);
+    private void edgeStatement(Endpoint first) throws IOException {
+        final List<Endpoint> points = new ArrayList<>();
+        points.add(first);
         do {
-            if (graph.isDirected() && token.type == MINUS_MINUS) {
+            if (directed && token.type == MINUS_MINUS) {
                 fail("-- used in digraph. Use -> instead.");
             }
-            if (!graph.isDirected() && token.type == ARROW) {
+            if (!directed && token.type == ARROW) {
                 fail("-> used in graph. Use -- instead.");
             }
             nextToken();
@@ -166,15 +149,13 @@ final class ParserImpl {
                 nextToken();
                 points.add(nodeId(id));
             } else if (token.type == SUBGRAPH || token.type == BRACE_OPEN) {
-                points.add(subgraph(graph.isDirected()));
+                points.add(subgraph(true));
             }
-        } while (token.type == MINUS_MINUS || token.type == ARROW);
-        final List<Token> attrs = (token.type == BRACKET_OPEN) ? attributeList(Scope.EDGE) : Collections.emptyList();
+        } while (isEdgeOp());
+        final Map<String, Label> attrs = token.type == BRACKET_OPEN
+                ? attributeList(Scope.EDGE) : Collections.emptyMap();
         for (int i = 0; i < points.size() - 1; i++) {
-            final LinkSource from = points.get(i);
-            final LinkTarget to = (LinkTarget) points.get(i + 1);
-            from.links().add(applyAttributes(from.linkTo(to), attrs));
-            graph.add(from);
+            handler.onEdge(points.get(i), points.get(i + 1), attrs);
         }
     }
 
@@ -183,15 +164,13 @@ final class ParserImpl {
                 new ParserException(lexer.pos, "Invalid compass value '" + name + "'"));
     }
 
-    private void nodeStatement(MutableGraph graph, PortNode nodeId) throws IOException {
-        final MutableNode node = mutNode(nodeId.name());
-        if (token.type == BRACKET_OPEN) {
-            applyMutableAttributes(node, attributeList(Scope.NODE));
-        }
-        graph.add(node);
+    private void nodeStatement(Endpoint nodeId) throws IOException {
+        final Map<String, Label> attrs = token.type == BRACKET_OPEN
+                ? attributeList(Scope.NODE) : Collections.emptyMap();
+        handler.onNode(nodeId.node(), attrs);
     }
 
-    private PortNode nodeId(Token base) throws IOException {
+    private Endpoint nodeId(Token base) throws IOException {
         String record = null;
         Compass compass = null;
         if (token.type == COLON) {
@@ -209,47 +188,13 @@ final class ParserImpl {
                 }
             }
         }
-        return mutNode(label(base)).port(record, compass);
+        return Endpoint.ofNode(label(base), record, compass);
     }
 
-    private void attributeStatement(MutableGraph graph, boolean isSub) throws IOException {
-        final MutableAttributed<?, ?> target = attributes(graph, token);
+    private void attributeStatement(boolean isSub) throws IOException {
         final Scope scope = scope(token, isSub);
         nextToken();
-        applyMutableAttributes(target, attributeList(scope));
-    }
-
-    private void applyMutableAttributes(MutableAttributed<?, ?> attributed, List<Token> tokens) {
-        for (int i = 0; i < tokens.size(); i += 2) {
-            final String key = tokens.get(i).value;
-            final Token value = tokens.get(i + 1);
-            if ("label".equals(key) || "xlabel".equals(key) || "headlabel".equals(key) || "taillabel".equals(key)) {
-                attributed.add(key, label(value));
-            } else {
-                attributed.add(key, value.value);
-            }
-        }
-    }
-
-    private <T extends Attributed<T, ?>> T applyAttributes(T attributed, List<Token> tokens) {
-        T res = attributed;
-        for (int i = 0; i < tokens.size(); i += 2) {
-            res = res.with(tokens.get(i).value, tokens.get(i + 1).value);
-        }
-        return res;
-    }
-
-    private MutableAttributed<?, ?> attributes(MutableGraph graph, Token token) {
-        switch (token.type) {
-            case GRAPH:
-                return graph.graphAttrs();
-            case NODE:
-                return CreationContext.get().nodeAttrs();
-            case EDGE:
-                return CreationContext.get().linkAttrs();
-            default:
-                throw new IllegalArgumentException("Unexpected token " + token);
-        }
+        handler.onAttributes(scope, attributeList(scope));
     }
 
     private Scope scope(Token token, boolean isSub) {
@@ -265,39 +210,42 @@ final class ParserImpl {
         }
     }
 
-    private List<Token> attributeList(Scope scope) throws IOException {
-        final List<Token> res = new ArrayList<>();
+    private Map<String, Label> attributeList(Scope scope) throws IOException {
+        final Map<String, Label> res = new LinkedHashMap<>();
         do {
             assertToken(BRACKET_OPEN);
             if (token.type == ID) {
-                res.addAll(attrListElement(scope));
+                attrListElement(scope, res);
             }
             assertToken(BRACKET_CLOSE);
         } while (token.type == BRACKET_OPEN);
         return res;
     }
 
-    private List<Token> attrListElement(Scope scope) throws IOException {
-        final List<Token> res = new ArrayList<>();
+    private void attrListElement(Scope scope, Map<String, Label> res) throws IOException {
         do {
             final Token key = token;
-            final Position pos = lexer.pos.copy(-key.value.length());
+            final Position pos = position(key);
             nextToken(EQUAL);
             final Token value = nextToken(ID);
             validate(key, value, scope, pos);
-            res.add(key);
-            res.add(value);
+            res.put(key.value, label(value));
             nextToken();
             if (token.type == SEMICOLON || token.type == COMMA) {
                 nextToken();
             }
         } while (token.type == ID);
-        return res;
     }
 
-    private void validate(Token key, Token value, Scope scope, Position pos) {
-        validator.validate(key.value, value.value, scope).forEach(msg ->
-                messageConsumer.accept(msg.at(pos.getLine(), pos.getCol())));
+    @Nullable
+    private Position position(Token key) {
+        return validation.isActive() ? lexer.pos.copy(-key.value.length()) : null;
+    }
+
+    private void validate(Token key, Token value, Scope scope, @Nullable Position pos) {
+        if (pos != null) {
+            validation.validate(key.value, value.value, scope, pos);
+        }
     }
 
     private Token nextToken() throws IOException {
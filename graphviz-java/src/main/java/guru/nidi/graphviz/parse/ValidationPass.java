@@ -0,0 +1,90 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.parse;
+
+import guru.nidi.graphviz.attribute.validate.AttributeValidator;
+import guru.nidi.graphviz.attribute.validate.AttributeValidator.Scope;
+import guru.nidi.graphviz.attribute.validate.ValidatorMessage;
+import guru.nidi.graphviz.parse.Parser.Validation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Validates the attributes found by the parser, either immediately or after parsing has finished.
+ */
+final class ValidationPass {
+    private final Validation mode;
+    private final AttributeValidator validator;
+    private final Consumer<ValidatorMessage> messageConsumer;
+    private final List<Pending> pending = new ArrayList<>();
+
+    ValidationPass(Validation mode, AttributeValidator validator, Consumer<ValidatorMessage> messageConsumer) {
+        this.mode = mode;
+        this.validator = validator;
+        this.messageConsumer = messageConsumer;
+    }
+
+    boolean isActive() {
+        return mode != Validation.NONE;
+    }
+
+    void validate(String key, String value, Scope scope, Position pos) {
+        if (mode == Validation.EAGER) {
+            new Pending(key, value, scope, pos).validate(validator).forEach(messageConsumer);
+        } else if (mode != Validation.NONE) {
+            pending.add(new Pending(key, value, scope, pos));
+        }
+    }
+
+    /**
+     * Validate all deferred attributes. The messages are reported in input order on the calling thread,
+     * even if validation itself runs in parallel.
+     */
+    void finish() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        final Stream<Pending> stream = mode == Validation.LAZY_PARALLEL ? pending.parallelStream() : pending.stream();
+        final List<List<ValidatorMessage>> messages = stream.map(p -> p.validate(validator)).collect(toList());
+        pending.clear();
+        messages.forEach(ms -> ms.forEach(messageConsumer));
+    }
+
+    private static final class Pending {
+        final String key;
+        final String value;
+        final Scope scope;
+        final Position pos;
+
+        Pending(String key, String value, Scope scope, Position pos) {
+            this.key = key;
+            this.value = value;
+            this.scope = scope;
+            this.pos = pos;
+        }
+
+        List<ValidatorMessage> validate(AttributeValidator validator) {
+            return validator.validate(key, value, scope).stream()
+                    .map(msg -> msg.at(pos.getLine(), pos.getCol()))
+                    .collect(toList());
+        }
+    }
+}
@@ -40,7 +40,8 @@ public class CommandBuilder {
     public CommandRunner build() {
         return new CommandRunner(
                 SystemUtils.getShellWrapperOrDefault(shellWrapper),
-                getCmdExecutorOrDefault(cmdExec));
+                getCmdExecutorOrDefault(cmdExec),
+                shellWrapper);
     }
 
     private static CommandLineExecutor getCmdExecutorOrDefault(@Nullable CommandLineExecutor cmdExec) {
@@ -16,8 +16,7 @@
 package guru.nidi.graphviz.service;
 
 import org.apache.commons.exec.CommandLine;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.apache.commons.exec.util.StringUtils;
 
 import javax.annotation.Nullable;
 import java.io.File;
@@ -25,19 +24,23 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class CommandRunner {
-    private static final Logger LOG = LoggerFactory.getLogger(CommandRunner.class);
+    private static final Map<List<String>, Path> EXECUTABLES = new ConcurrentHashMap<>();
+    private static final AtomicInteger CACHE_GENERATION = new AtomicInteger();
 
     private final Function<CommandLine, CommandLine> wrapperFunc;
     private final CommandLineExecutor cmdExec;
+    private final boolean shell;
 
-    CommandRunner(Function<CommandLine, CommandLine> wrapperFunc, CommandLineExecutor cmdExec) {
+    CommandRunner(Function<CommandLine, CommandLine> wrapperFunc, CommandLineExecutor cmdExec, boolean shell) {
         this.wrapperFunc = wrapperFunc;
         this.cmdExec = cmdExec;
+        this.shell = shell;
     }
 
     void exec(String cmd, int timeout, List<String> args) throws IOException, InterruptedException {
@@ -63,6 +66,20 @@ public class CommandRunner {
         exec(new CommandLine(cmd).addArguments(args, quote), workDir, timeout);
     }
 
+    /**
+     * Execute a command given as executable and separate arguments.
+     * If the command is run by a shell, the executable and the arguments are quoted if they contain spaces,
+     * otherwise they are passed as they are.
+     */
+    public void exec(List<String> command, @Nullable File workDir, int timeout)
+            throws IOException, InterruptedException {
+        final String[] args = command.subList(1, command.size()).toArray(new String[0]);
+        final CommandLine cmd = shell
+                ? new CommandLine(StringUtils.quoteArgument(command.get(0))).addArguments(args, true)
+                : new CommandLine(command.get(0)).addArguments(args, false);
+        exec(cmd, workDir, timeout);
+    }
+
     void exec(CommandLine cmd, @Nullable File workDir, int timeout) throws IOException, InterruptedException {
         final CommandLine wrappedCmd = wrapperFunc.apply(cmd);
         cmdExec.execute(wrappedCmd, workDir, timeout);
@@ -81,38 +98,56 @@ public class CommandRunner {
         return Arrays
                 .stream(pathEnvVar.split(File.pathSeparator))
                 .map(SystemUtils::pathOf)
-                .filter(path -> Files.exists(path))
-                .map(path -> {
-                    try (Stream<Path> entries = Files.list(path)) {
-                        return entries
-                                // Filter on the filename
-                                // Doing a case-sensitive compare here, that's not correct on windows ?
-                                .filter(filePath -> program.equals(filePath.getFileName().toString()))
-
-                                // Filter out folders
-                                .filter(filePath -> Files.isRegularFile(filePath))
-
-                                // Check if the file is executable
-                                // Does this check work on Windows this way ?
-                                .filter(Files::isExecutable)
-
-                                // Consume the stream here - we're inside a try-with-resources
-                                .collect(Collectors.toList())
-                                .stream();
-                    } catch (IOException e) {
-                        LOG.error("Problem finding path for {}", program, e);
-                        return Stream.<Path>empty();
-                    }
-                })
-                .flatMap(stream -> stream);
+                .map(path -> path.resolve(program))
+                .filter(CommandRunner::isExecutableFile);
+    }
+
+    private static boolean isExecutableFile(Path path) {
+        return Files.isRegularFile(path) && Files.isExecutable(path);
     }
 
     static boolean isExecutableFound(String program) {
-        return which(program).anyMatch(path -> true);
+        return findExecutable(program, Optional.ofNullable(System.getenv("PATH")).orElse("")).isPresent();
     }
 
     public static boolean isExecutableFound(String program, String envPath) {
-        return which(program, envPath).anyMatch(path -> true);
+        return findExecutable(program, envPath).isPresent();
+    }
+
+    /**
+     * Find the first executable with the given name in the given path.
+     * Found executables are cached and only looked up again if they are not executable anymore.
+     * Checking a cached executable costs two file system calls (is it a regular file, is it executable)
+     * instead of up to two per PATH entry.
+     */
+    public static Optional<Path> findExecutable(String program, String envPath) {
+        final List<String> key = Arrays.asList(program, envPath);
+        final Path cached = EXECUTABLES.get(key);
+        if (cached != null && isExecutableFile(cached)) {
+            return Optional.of(cached);
+        }
+        final Optional<Path> found = which(program, envPath).findFirst();
+        if (found.isPresent()) {
+            EXECUTABLES.put(key, found.get());
+        } else {
+            EXECUTABLES.remove(key);
+        }
+        return found;
     }
 
+    /**
+     * Forget all found executables, e.g. after graphviz has been installed somewhere else.
+     */
+    public static void clearExecutableCache() {
+        EXECUTABLES.clear();
+        CACHE_GENERATION.incrementAndGet();
+    }
+
+    /**
+     * A number that changes with each call of {@link #clearExecutableCache()}.
+     * Users keeping their own resolved executables can check it to know when to resolve them again.
+     */
+    public static int executableCacheGeneration() {
+        return CACHE_GENERATION.get();
+    }
 }
@@ -0,0 +1,105 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.service;
+
+import org.apache.commons.exec.CommandLine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Execute a CommandLine directly using a ProcessBuilder.
+ * No shell is involved, so the executable and each argument must be given separately.
+ * Arguments that have been quoted by the CommandLine are passed without the quotes.
+ * The timeouts of all processes are watched by one shared thread.
+ */
+public class DirectCommandLineExecutor extends CommandLineExecutor {
+    private static final Logger LOG = LoggerFactory.getLogger(DirectCommandLineExecutor.class);
+    private static final ScheduledExecutorService TIMEOUTS = Executors.newSingleThreadScheduledExecutor(r -> {
+        final Thread thread = new Thread(r, "DirectCommandLineExecutor timeout");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Override
+    public void execute(CommandLine cmd, @Nullable File workingDirectory, int timeout)
+            throws InterruptedException, IOException {
+        LOG.debug("executing command {}", cmd);
+        final ProcessBuilder builder = new ProcessBuilder(unquoted(cmd)).redirectErrorStream(true);
+        if (workingDirectory != null) {
+            builder.directory(workingDirectory);
+        }
+        final Process process = builder.start();
+        final AtomicBoolean killed = new AtomicBoolean();
+        final ScheduledFuture<?> kill = TIMEOUTS.schedule(() -> {
+            killed.set(true);
+            process.destroyForcibly();
+        }, timeout, MILLISECONDS);
+        final String output;
+        try {
+            process.getOutputStream().close();
+            output = readOutput(process.getInputStream());
+        } finally {
+            kill.cancel(false);
+        }
+        if (process.waitFor() != 0) {
+            final String msg = killed.get()
+                    ? "Command took too long to execute, try setting a higher timout: '" + cmd + "'"
+                    : output.isEmpty() ? "Command didn't succeed: '" + cmd + "'" : output;
+            throw new IOException(msg);
+        }
+        if (!output.isEmpty()) {
+            LOG.info(output);
+        }
+    }
+
+    //CommandLine quotes arguments containing spaces or quotes, without a shell the plain values are needed
+    private static List<String> unquoted(CommandLine cmd) {
+        final List<String> command = new ArrayList<>();
+        command.add(unquote(cmd.getExecutable()));
+        for (final String arg : cmd.getArguments()) {
+            command.add(unquote(arg));
+        }
+        return command;
+    }
+
+    private static String unquote(String s) {
+        final boolean quoted = s.length() > 1
+                && ((s.startsWith("\"") && s.endsWith("\"")) || (s.startsWith("'") && s.endsWith("'")));
+        return quoted ? s.substring(1, s.length() - 1) : s;
+    }
+
+    private static String readOutput(InputStream in) throws IOException {
+        try (final InputStream input = in) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buf = new byte[1024];
+            int read;
+            while ((read = input.read(buf)) >= 0) {
+                out.write(buf, 0, read);
+            }
+            return new String(out.toByteArray(), Charset.defaultCharset()).trim();
+        }
+    }
+}
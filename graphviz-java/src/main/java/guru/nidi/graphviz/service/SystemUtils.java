@@ -90,10 +90,11 @@ public final class SystemUtils {
         throw new IllegalStateException("Unsupported OS");
     }
 
+    //cmd removes the first and the last quote of the command, so quoted parts of it are kept intact
     private static Function<CommandLine, CommandLine> getWindowsShellWrapperFunc() {
         return (cmd) -> new CommandLine("cmd")
                 .addArgument("/C")
-                .addArguments(cmd.toStrings(), false);
+                .addArgument('"' + String.join(" ", cmd.toStrings()) + '"', false);
     }
 
     private static Function<CommandLine, CommandLine> getLinuxShellWrapperFunc() {
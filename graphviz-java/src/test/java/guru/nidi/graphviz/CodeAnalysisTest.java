@@ -104,15 +104,18 @@ class CodeAnalysisTest extends CodeAssertJunit5Test {
                         .ignore("FieldDeclarationsShouldBeAtStartOfClass"))
                 .because("it's ok here",
                         In.locs("Format", "AttributeConfigs").ignore("AvoidDuplicateLiterals"),
-                        In.locs("LabelTest", "RankTest", "AttributeValidatorTest", "ParserTest", "JavascriptEngineTest").ignore("JUnitTestContainsTooManyAsserts"),
+                        In.locs("LabelTest", "RankTest", "AttributeValidatorTest", "ParserTest", "JavascriptEngineTest", "GraphvizEnginePoolTest", "EngineTest", "GraphvizCmdLineEngineTest", "GraphvizTest", "LruRenderCacheTest", "DirectCommandLineExecutorTest", "GraphvizJdkEngineTest").ignore("JUnitTestContainsTooManyAsserts"),
                         In.loc("Serializer").ignore("AvoidStringBufferField", "CompareObjectsWithEquals"),
+                        In.loc("AbstractJsGraphvizEngine").ignore("CompareObjectsWithEquals"),
+                        In.loc("DotProcesses").ignore("AvoidStringBufferField"),
                         In.locs("ThrowingFunction", "IoUtils").ignore("AvoidThrowingRawExceptionTypes", "AvoidCatchingGenericException"),
-                        In.loc("GraphvizServer").ignore("AvoidInstantiatingObjectsInLoops"),
+                        In.locs("GraphvizServer", "GraphvizServerEngine", "GraphvizEnginePool", "GraphvizCmdLineEngine")
+                                .ignore("AvoidInstantiatingObjectsInLoops"),
                         In.clazz(Shape.class).ignore("AvoidFieldNameMatchingTypeName"),
                         In.loc("CommandRunnerTest").ignore("JUnitTestsShouldIncludeAssert"),
                         In.locs("Lexer", "ParserImpl", "ImmutableGraph", "MutableGraph", "Label#applyTo", "Rank$GraphRank#applyTo", "Options#toJson", "Options#fromJson")
                                 .ignore("CyclomaticComplexity", "StdCyclomaticComplexity", "ModifiedCyclomaticComplexity", "NPathComplexity"),
-                        In.classes(GraphvizJdkEngine.class, GraphvizV8Engine.class, GraphvizServerEngine.class, AbstractGraphvizEngine.class)
+                        In.classes(GraphvizJdkEngine.class, GraphvizV8Engine.class, GraphvizServerEngine.class, AbstractGraphvizEngine.class, GraphvizEnginePool.class)
                                 .ignore("PreserveStackTrace", "SignatureDeclareThrowsException", "AvoidCatchingGenericException"),
                         In.locs("MutableGraph", "Serializer", "ParserImpl", "Label").ignore("GodClass"),
                         In.locs("ImmutableGraph", "MutableGraph").ignore("ExcessiveMethodLength", "ExcessiveParameterList", "LooseCoupling"),
@@ -130,7 +133,7 @@ class CodeAnalysisTest extends CodeAssertJunit5Test {
                         In.clazz(CommandRunner.class).ignore("OptimizableToArrayCall"),
                         In.everywhere().ignore("SimplifyStartsWith"))
                 .because("It's wrapping an Exception with a RuntimeException",
-                        In.classes(Graphviz.class, CreationContext.class).ignore("AvoidCatchingGenericException"));
+                        In.locs("Engines", "CreationContext").ignore("AvoidCatchingGenericException"));
         return new PmdAnalyzer(AnalyzerConfig.maven().mainAndTest(), collector)
                 .withRulesets(PmdConfigs.defaultPmdRulesets())
                 .analyze();
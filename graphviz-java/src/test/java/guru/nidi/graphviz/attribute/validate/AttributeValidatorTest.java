@@ -21,6 +21,7 @@ import guru.nidi.graphviz.attribute.validate.ValidatorMessage.Severity;
 import org.junit.jupiter.api.Test;
 
 import javax.annotation.Nullable;
+import java.util.ArrayList;
 import java.util.List;
 
 import static guru.nidi.graphviz.attribute.Attributes.attr;
@@ -32,6 +33,7 @@ import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class AttributeValidatorTest {
@@ -196,6 +198,15 @@ class AttributeValidatorTest {
                 validate(attr("arrowhead", "dotnone"), EDGE));
     }
 
+    @Test
+    void validateAllReusesResult() {
+        final AttributeValidator validator = new AttributeValidator(null, null);
+        final List<ValidatorMessage> result = new ArrayList<>();
+        validator.validateAll(attrs(attr("hula", 5)), NODE, result);
+        assertSame(result, validator.validateAll(attrs(attr("color", "red")), NODE, result));
+        assertOk(result);
+    }
+
     private void assertMessage(Severity severity, String attribute, String message, List<ValidatorMessage> actual) {
         assertEquals(singletonList(new ValidatorMessage(severity, attribute, message)), actual);
     }
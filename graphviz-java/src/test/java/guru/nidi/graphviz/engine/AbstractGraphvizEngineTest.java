@@ -44,8 +44,9 @@ class AbstractGraphvizEngineTest {
 
         final String vizResult = engineUnderTest.jsVizExec("digraph{ a -> b}", options);
 
-        assertThat(vizResult, is("totalMemory=320000;render('digraph{ a -> b}',{format:'svg',engine:'dot',totalMemory:'320000',"
-                + "yInvert:true,basedir:'" + new File(".").getAbsolutePath() + "',images:[]});"));
+        assertThat(vizResult, is("renderValues('digraph{ a -> b}','{format:\\'svg\\',engine:\\'dot\\',"
+                + "totalMemory:\\'320000\\',yInvert:true,basedir:\\'" + new File(".").getAbsolutePath()
+                + "\\',images:[]}','320000')"));
     }
 
     @Test
@@ -55,7 +56,7 @@ class AbstractGraphvizEngineTest {
 
         final String vizResult = engineUnderTest.jsVizExec("digraph{ a -> b}", options);
 
-        assertThat(vizResult, is("render('digraph{ a -> b}',{format:'svg',engine:'dot',"
-                + "basedir:'" + new File(".").getAbsolutePath() + "',images:[]});"));
+        assertThat(vizResult, is("renderValues('digraph{ a -> b}','{format:\\'svg\\',engine:\\'dot\\',"
+                + "basedir:\\'" + new File(".").getAbsolutePath() + "\\',images:[]}','')"));
     }
 }
@@ -0,0 +1,70 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import guru.nidi.graphviz.engine.Communicator.Message;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.*;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static java.util.stream.Collectors.joining;
+import static org.hamcrest.core.Is.is;
+
+class CommunicatorTest {
+    @ParameterizedTest
+    @CsvSource({"false", "true"})
+    void smallMessage(boolean binary) throws Exception {
+        assertThat(roundtrip(binary, Communicator.COMPRESSION_THRESHOLD, "hällo"), is("hällo"));
+    }
+
+    @ParameterizedTest
+    @CsvSource({"false", "true"})
+    void compressedSmallMessage(boolean binary) throws Exception {
+        assertThat(roundtrip(binary, 0, "hällo"), is("hällo"));
+    }
+
+    @ParameterizedTest
+    @CsvSource({"false", "true"})
+    void bigMessage(boolean binary) throws Exception {
+        final String s = IntStream.range(0, 200_000).mapToObj(i -> "<text>node " + i + " äöü</text>\n").collect(joining());
+        assertThat(roundtrip(binary, Communicator.COMPRESSION_THRESHOLD, s), is(s));
+    }
+
+    private String roundtrip(boolean binary, int compressionThreshold, String content)
+            throws IOException, InterruptedException, ExecutionException, TimeoutException {
+        try (final ServerSocket server = new ServerSocket(0);
+             final Communicator client = new Communicator(
+                     new Socket("localhost", server.getLocalPort()), 5000, binary, compressionThreshold);
+             final Communicator receiver = new Communicator(server.accept(), 5000, binary)) {
+            final FutureTask<Void> writer = new FutureTask<>(() -> {
+                client.writeMessage(1, "ok", content);
+                client.writeMessage(2, "ok", "second");
+                return null;
+            });
+            new Thread(writer).start();
+            final Message message = receiver.readMessage(true);
+            final Message second = receiver.readMessage(true);
+            writer.get(5, TimeUnit.SECONDS);
+            return second.id == 2 && "second".equals(second.content) ? message.content : "";
+        }
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+class DotProcessesTest {
+    //cat echoes the graphs, so the output of each graph is the graph itself
+    private static final List<String> CAT = singletonList("cat");
+
+    @BeforeAll
+    static void init() {
+        assumeFalse(System.getProperty("os.name").startsWith("Windows"));
+    }
+
+    @Test
+    void sequential() throws Exception {
+        try (final DotProcesses processes = new DotProcesses(1)) {
+            final List<String> res = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                res.add(execute(processes, CAT, "graph g" + i + " {}"));
+            }
+            assertEquals(asList("graph g0 {}", "graph g1 {}", "graph g2 {}"), res);
+        }
+    }
+
+    @Test
+    void parallel() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (final DotProcesses processes = new DotProcesses(2)) {
+            final List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                final String src = "graph g" + i + " {}";
+                futures.add(executor.submit(() -> execute(processes, CAT, src)));
+            }
+            final List<String> res = new ArrayList<>();
+            final List<String> expected = new ArrayList<>();
+            for (int i = 0; i < futures.size(); i++) {
+                res.add(futures.get(i).get());
+                expected.add("graph g" + i + " {}");
+            }
+            assertEquals(expected, res);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void failingProcess() {
+        try (final DotProcesses processes = new DotProcesses(1)) {
+            assertThrows(GraphvizException.class, () -> execute(processes, asList("sh", "-c", "exit 1"), "graph {}"));
+        }
+    }
+
+    @Test
+    void failingProcessFreesSlot() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(3);
+        try (final DotProcesses processes = new DotProcesses(1)) {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                futures.add(executor.submit(() -> execute(processes, asList("sh", "-c", "exit 1"), "graph {}")));
+            }
+            final long start = System.currentTimeMillis();
+            int failed = 0;
+            for (final Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    failed += e.getCause() instanceof GraphvizException ? 1 : 0;
+                }
+            }
+            final long time = System.currentTimeMillis() - start;
+            assertTrue(failed == 3 && time < 4000, "failed: " + failed + ", time: " + time);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void complete() {
+        final List<Boolean> res = new ArrayList<>();
+        for (final String src : asList("graph g {a}", "graph g {a} // end", "graph g {a [label=\"}\"]}",
+                "graph g {a [label=<<b>}</b>>]}\n", "/* { */ graph g {a}",
+                "graph g {a", "graph g {a [label=\"a}", "graph g {a [label=<x}]}", "graph g {a} /* end",
+                "graph g {a} b", "graph g {a}}")) {
+            res.add(DotInput.complete(src));
+        }
+        assertEquals(asList(true, true, true, true, true, false, false, false, false, false, false), res);
+    }
+
+    @Test
+    void unterminatedGraphRunsInOwnProcess() throws Exception {
+        try (final DotProcesses processes = new DotProcesses(1)) {
+            final String src = "graph g {a [label=\"}";
+            assertEquals(src + "closed", execute(processes, asList("sh", "-c", "cat; printf closed"), src));
+        }
+    }
+
+    private String execute(DotProcesses processes, List<String> command, String src)
+            throws IOException, InterruptedException {
+        return StandardCharsets.UTF_8.decode(processes.execute(command, src, 5000)).toString();
+    }
+}
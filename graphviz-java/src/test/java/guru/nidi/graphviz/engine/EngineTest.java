@@ -17,6 +17,8 @@ package guru.nidi.graphviz.engine;
 
 import com.eclipsesource.v8.V8;
 import guru.nidi.graphviz.service.CommandLineExecutor;
+import guru.nidi.graphviz.service.CommandRunner;
+import guru.nidi.graphviz.service.DirectCommandLineExecutor;
 import guru.nidi.graphviz.service.SystemUtils;
 import org.apache.commons.exec.CommandLine;
 import org.apache.commons.io.FileUtils;
@@ -28,9 +30,13 @@ import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Field;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.*;
 import java.util.function.Supplier;
 
@@ -40,15 +46,19 @@ import static guru.nidi.graphviz.engine.FormatTest.START1_7;
 import static guru.nidi.graphviz.model.Factory.graph;
 import static guru.nidi.graphviz.model.Factory.node;
 import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.startsWith;
+import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.isEmptyOrNullString;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.core.Every.everyItem;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
@@ -87,12 +97,83 @@ class EngineTest {
         }
     }
 
+    @Test
+    void serverPipelined() {
+        assumeFalse(System.getProperty("os.name").startsWith("Windows"), "I gave up fixing this");
+        GraphvizServerEngine.stopServer();
+        try {
+            Graphviz.useEngine(new GraphvizServerEngine().useEngine(new GraphvizV8Engine()));
+            final List<Graphviz> graphs = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                graphs.add(Graphviz.fromString("graph g {number" + i + "--b}"));
+            }
+            final List<String> res = Graphviz.renderAll(graphs, SVG).map(Renderer::toString).collect(toList());
+            for (int i = 0; i < res.size(); i++) {
+                assertThat(res.get(i), containsString("number" + i));
+            }
+        } finally {
+            GraphvizServerEngine.stopServer();
+        }
+    }
+
+    @Test
+    void serverRestartsIncompatibleServer() throws Exception {
+        assumeFalse(System.getProperty("os.name").startsWith("Windows"), "I gave up fixing this");
+        GraphvizServerEngine.stopServer();
+        final Thread legacy = legacyServer(new ServerSocket(GraphvizServer.PORT));
+        try {
+            Graphviz.useEngine(new GraphvizServerEngine().useEngine(new GraphvizV8Engine()));
+            assertThat(Graphviz.fromString("graph g {a--b}").render(SVG_STANDALONE).toString(), startsWith(START1_7));
+            legacy.join(1000);
+            assertThat(legacy.isAlive(), is(false));
+        } finally {
+            GraphvizServerEngine.stopServer();
+        }
+    }
+
+    //reads text lines like servers before the handshake and stops on -1
+    private Thread legacyServer(ServerSocket ss) {
+        final Thread thread = new Thread(() -> {
+            try (final ServerSocket closing = ss) {
+                while (true) {
+                    try (final Socket socket = closing.accept();
+                         final Communicator com = new Communicator(socket, 500)) {
+                        if (com.readLen() == -1) {
+                            break;
+                        }
+                    } catch (IOException | NumberFormatException e) {
+                        //not understood, like the old server
+                    }
+                }
+            } catch (IOException e) {
+                //ignore
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
     @Test
     void v8() {
         Graphviz.useEngine(new GraphvizV8Engine());
         assertThat(Graphviz.fromString("graph g {a--b}").render(SVG_STANDALONE).toString(), startsWith(START1_7));
     }
 
+    @Test
+    void v8Pool() throws Exception {
+        Graphviz.useEngine(new GraphvizV8Engine().poolSize(2));
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            final String name = "node" + i;
+            results.add(executor.submit(() -> Graphviz.fromString("graph g {" + name + "--b}").render(SVG).toString()));
+        }
+        for (int i = 0; i < results.size(); i++) {
+            assertThat(results.get(i).get(), containsString("node" + i));
+        }
+        executor.shutdown();
+    }
+
     @Test
     void v8WithoutPath() throws Exception {
         assertNativeLibs(System.getProperty("user.home"), () -> Graphviz.useEngine(new GraphvizV8Engine()));
@@ -126,6 +207,33 @@ class EngineTest {
         fail("No native library found");
     }
 
+    @Test
+    void v8Batch() {
+        Graphviz.useEngine(new GraphvizV8Engine());
+        final List<String> res = Graphviz.renderAll(asList(
+                Graphviz.fromString("graph g {first--b}"),
+                Graphviz.fromString("graph g {second--b}").totalMemory(32000000)), SVG)
+                .map(Renderer::toString)
+                .collect(toList());
+        assertThat(res.size(), is(2));
+        assertThat(res.get(0), containsString("first"));
+        assertThat(res.get(1), containsString("second"));
+    }
+
+    @Test
+    void v8BatchWithSeparator() {
+        final GraphvizV8Engine engine = new GraphvizV8Engine();
+        Graphviz.useEngine(engine);
+        Graphviz.fromString("graph g {a--b}").render(SVG).toString();
+        final List<String> res = engine.executeAll(
+                asList("graph g {first [label=\"x\u001ey\"]}", "graph g {second--b}"),
+                asList(Options.create(), Options.create()), null).stream()
+                .map(r -> r.map(File::getName, s -> s))
+                .collect(toList());
+        assertThat(res.size(), is(2));
+        assertThat(res.get(1), containsString("second"));
+    }
+
     @ParameterizedTest
     @MethodSource
     void multi(Supplier<GraphvizEngine> engineSupplier) throws InterruptedException {
@@ -164,6 +272,63 @@ class EngineTest {
         assertThat(actual, startsWith(START1_7.replace("\n", System.lineSeparator())));
     }
 
+    @Test
+    void cmdLinePipes() throws IOException {
+        assumeFalse(System.getProperty("os.name").startsWith("Windows"));
+        final File dotFile = setUpEchoingDotFile();
+        Graphviz.useEngine(new GraphvizCmdLineEngine(dotFile.getParent(), new CommandLineExecutor()).pipes(true));
+
+        final String actual = Graphviz.fromString("graph g {a--b}").render(SVG_STANDALONE).toString();
+        assertThat(actual, is("graph g {a--b}"));
+    }
+
+    @Test
+    void cmdLinePipesBinary() throws IOException {
+        assumeFalse(System.getProperty("os.name").startsWith("Windows"));
+        final File dotFile = setUpEchoingDotFile();
+        Graphviz.useEngine(new GraphvizCmdLineEngine(dotFile.getParent(), new CommandLineExecutor()).pipes(true));
+
+        final File out = Graphviz.fromString("graph g {a--b}").rasterize(Rasterizer.builtIn("png"))
+                .toFile(new File(temp, "piped"));
+        assertThat(out.getName(), is("piped.png"));
+        assertThat(new String(Files.readAllBytes(out.toPath()), StandardCharsets.UTF_8), is("graph g {a--b}"));
+    }
+
+    @Test
+    void cmdLineDirect() throws IOException {
+        assumeFalse(System.getProperty("os.name").startsWith("Windows"));
+        final File dotFile = setUpFakeDotFile();
+        Files.write(dotFile.toPath(), ("#!/bin/sh\n"
+                + "for a; do case $a in -o*) out=${a#-o};; -*) ;; *) in=$a;; esac; done\n"
+                + "cat \"$in\" > \"$out\"\n").getBytes(StandardCharsets.UTF_8));
+        Graphviz.useEngine(new GraphvizCmdLineEngine(dotFile.getParent(), new DirectCommandLineExecutor(), false));
+
+        final String actual = Graphviz.fromString("graph g {a--b}").render(SVG_STANDALONE).toString();
+        assertThat(actual, is("graph g {a--b}"));
+    }
+
+    @Test
+    void cmdLinePersistentProcesses() {
+        final String envPath = Optional.ofNullable(System.getenv("PATH")).orElse("");
+        assumeTrue(CommandRunner.findExecutable(SystemUtils.executableName("dot"), envPath).isPresent(),
+                "dot is not installed");
+        final GraphvizCmdLineEngine engine = new GraphvizCmdLineEngine().persistentProcesses(1);
+        Graphviz.useEngine(engine);
+
+        assertThat(Graphviz.fromString("graph g {a--b}").render(SVG).toString(), containsString("<title>a</title>"));
+        assertThrows(GraphvizException.class, () -> Graphviz.fromString("graph g {a--}").render(SVG).toString());
+        assertThat(Graphviz.fromString("graph g {c--d}").render(SVG).toString(), containsString("<title>c</title>"));
+
+        final StringBuilder big = new StringBuilder("digraph g {");
+        for (int i = 0; i < 2000; i++) {
+            big.append('n').append(i).append("->n").append((i * 7) % 2000).append(';');
+        }
+        engine.timeout(1, TimeUnit.MILLISECONDS);
+        assertThrows(GraphvizException.class, () -> Graphviz.fromString(big.append('}').toString()).render(SVG).toString());
+        engine.timeout(10, TimeUnit.SECONDS);
+        assertThat(Graphviz.fromString("graph g {e--f}").render(SVG).toString(), containsString("<title>e</title>"));
+    }
+
     /**
      * Test to check if we can set the output path and name of the dot file
      */
@@ -208,6 +373,13 @@ class EngineTest {
         return dotFile;
     }
 
+    //a dot that outputs its input
+    private File setUpEchoingDotFile() throws IOException {
+        final File dotFile = setUpFakeDotFile();
+        Files.write(dotFile.toPath(), "#!/bin/sh\ncat\n".getBytes(StandardCharsets.UTF_8));
+        return dotFile;
+    }
+
     private CommandLineExecutor setUpFakeStubCommandExecutor() throws IOException, InterruptedException {
         final CommandLineExecutor cmdExecutor = mock(CommandLineExecutor.class);
         doAnswer(invocationOnMock -> {
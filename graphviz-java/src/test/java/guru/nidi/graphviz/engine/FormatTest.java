@@ -15,6 +15,7 @@
  */
 package guru.nidi.graphviz.engine;
 
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 
@@ -22,6 +23,7 @@ import java.util.*;
 import java.util.Map.Entry;
 
 import static guru.nidi.graphviz.engine.Format.SVG;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
 class FormatTest {
@@ -53,6 +55,14 @@ class FormatTest {
                 EngineResult.fromString(START1_7 + values.getKey())));
     }
 
+    @Test
+    void postProcessUtf8() {
+        final String after = AFTER.replace("7.1", "14.2");
+        assertEquals(EngineResult.fromUtf8(UTF_8.encode(after)), SVG.postProcess(
+                Graphviz.fromString("graph {dpi=96}"),
+                EngineResult.fromUtf8(UTF_8.encode(START1_7 + BEFORE))));
+    }
+
     static Set<Entry<String, String>> postProcess() {
         final Map<String, String> map = new HashMap<>();
         map.put(BEFORE, AFTER);
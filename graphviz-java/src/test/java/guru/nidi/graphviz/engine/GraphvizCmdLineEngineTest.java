@@ -0,0 +1,156 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import guru.nidi.graphviz.service.*;
+import org.apache.commons.exec.CommandLine;
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.*;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static guru.nidi.graphviz.engine.Format.SVG_STANDALONE;
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+class GraphvizCmdLineEngineTest {
+    @Nullable
+    private static File temp;
+
+    @BeforeAll
+    static void init() throws IOException {
+        temp = new File(System.getProperty("java.io.tmpdir"), "cmdLineEngineTest");
+        FileUtils.deleteDirectory(temp);
+        temp.mkdir();
+    }
+
+    @AfterEach
+    void end() {
+        Graphviz.releaseEngine();
+    }
+
+    @Test
+    void batch() throws IOException {
+        final File dotFile = setUpFakeDotFile();
+        final List<String> commands = new ArrayList<>();
+        final List<File> workingDirs = new ArrayList<>();
+        final CommandLineExecutor cmdExecutor = new CommandLineExecutor() {
+            @Override
+            public void execute(CommandLine cmd, @Nullable File workingDirectory, int timeout) throws IOException {
+                commands.add(cmd.toString());
+                workingDirs.add(workingDirectory);
+                for (final String arg : cmd.getArguments()) {
+                    for (final String part : arg.split(" ")) {
+                        if (part.endsWith(".dot")) {
+                            Files.write(new File(workingDirectory, part + ".svg").toPath(),
+                                    Files.readAllBytes(new File(workingDirectory, part).toPath()));
+                        }
+                    }
+                }
+            }
+        };
+        Graphviz.useEngine(new GraphvizCmdLineEngine(dotFile.getParent(), cmdExecutor));
+
+        final List<String> res = Graphviz.renderAll(asList(
+                Graphviz.fromString("graph g {a--b}"),
+                Graphviz.fromString("graph g {c--d}").yInvert(true),
+                Graphviz.fromString("graph g {e--f}")), Format.SVG_STANDALONE)
+                .map(Renderer::toString)
+                .collect(toList());
+        assertThat(res, is(asList("graph g {a--b}", "graph g {c--d}", "graph g {e--f}")));
+        assertThat(commands.size(), is(2));
+        assertThat(workingDirs.stream().anyMatch(File::exists), is(false));
+    }
+
+    @Test
+    void batchOutputDotFile() throws IOException {
+        final File dotFile = setUpFakeDotFile();
+        final List<String> commands = new ArrayList<>();
+        final CommandLineExecutor cmdExecutor = new CommandLineExecutor() {
+            @Override
+            public void execute(CommandLine cmd, @Nullable File workingDirectory, int timeout) throws IOException {
+                commands.add(cmd.toString());
+                String in = null;
+                for (final String arg : cmd.getArguments()) {
+                    for (final String part : arg.split(" ")) {
+                        if (part.endsWith(".dot")) {
+                            in = part;
+                        } else if (part.startsWith("-o") && in != null) {
+                            Files.copy(new File(in).toPath(), new File(workingDirectory, part.substring(2)).toPath());
+                        }
+                    }
+                }
+            }
+        };
+        final File dotOutputFolder = new File(temp, "batchOut");
+        dotOutputFolder.mkdir();
+        final GraphvizCmdLineEngine engine = new GraphvizCmdLineEngine(dotFile.getParent(), cmdExecutor);
+        engine.setDotOutputFile(dotOutputFolder.getAbsolutePath(), "batch");
+        Graphviz.useEngine(engine);
+
+        final List<String> res = Graphviz.renderAll(asList(
+                Graphviz.fromString("graph g {a--b}"),
+                Graphviz.fromString("graph g {c--d}")), Format.SVG_STANDALONE)
+                .map(Renderer::toString)
+                .collect(toList());
+        assertThat(res, is(asList("graph g {a--b}", "graph g {c--d}")));
+        assertThat(commands.size(), is(2));
+        assertTrue(new File(dotOutputFolder, "batch.dot").exists());
+    }
+
+    @Test
+    void clearedExecutableCache() throws IOException {
+        assumeFalse(System.getProperty("os.name").startsWith("Windows"));
+        final File dotFile = setUpEchoingDotFile();
+        final File first = new File(temp, "first");
+        first.mkdir();
+        Graphviz.useEngine(new GraphvizCmdLineEngine(first + File.pathSeparator + dotFile.getParent(),
+                new CommandLineExecutor()).pipes(true));
+        assertThat(Graphviz.fromString("graph g {a--b}").render(SVG_STANDALONE).toString(), is("graph g {a--b}"));
+
+        final File firstDot = new File(first, dotFile.getName());
+        Files.write(firstDot.toPath(), "#!/bin/sh\ncat > /dev/null\nprintf first\n".getBytes(StandardCharsets.UTF_8));
+        firstDot.setExecutable(true);
+        assertThat(Graphviz.fromString("graph g {a--b}").render(SVG_STANDALONE).toString(), is("graph g {a--b}"));
+        CommandRunner.clearExecutableCache();
+        assertThat(Graphviz.fromString("graph g {a--b}").render(SVG_STANDALONE).toString(), is("first"));
+    }
+
+    private File setUpFakeDotFile() throws IOException {
+        final String filename = SystemUtils.executableName("dot");
+        final File dotFile = new File(temp, filename);
+        dotFile.createNewFile();
+        dotFile.setExecutable(true);
+        return dotFile;
+    }
+
+    //a dot that outputs its input
+    private File setUpEchoingDotFile() throws IOException {
+        final File dotFile = setUpFakeDotFile();
+        Files.write(dotFile.toPath(), "#!/bin/sh\ncat\n".getBytes(StandardCharsets.UTF_8));
+        return dotFile;
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class GraphvizEnginePoolTest {
+    final AtomicInteger created = new AtomicInteger();
+    final AtomicInteger closed = new AtomicInteger();
+
+    @Test
+    void warmUp() {
+        try (final GraphvizEnginePool pool = init(new GraphvizEnginePool(CountingEngine::new).size(4).warmUp(3))) {
+            assertThat(created.get(), is(3));
+            assertThat(pool.idleEngines(), is(3));
+        }
+        assertThat(closed.get(), is(3));
+    }
+
+    @Test
+    void reuseEngine() {
+        try (final GraphvizEnginePool pool = init(new GraphvizEnginePool(CountingEngine::new).size(4))) {
+            for (int i = 0; i < 5; i++) {
+                assertThat(pool.execute("graph", Options.create(), null), is(EngineResult.fromString("graph")));
+            }
+            assertThat(created.get(), is(1));
+        }
+    }
+
+    @Test
+    void boundedSize() throws Exception {
+        final CountDownLatch started = new CountDownLatch(2);
+        final CountDownLatch finish = new CountDownLatch(1);
+        try (final GraphvizEnginePool pool = init(new GraphvizEnginePool(() -> new CountingEngine(started, finish))
+                .size(2).acquireTimeout(0, MILLISECONDS))) {
+            final ExecutorService executor = Executors.newFixedThreadPool(2);
+            executor.submit(() -> pool.execute("a", Options.create(), null));
+            executor.submit(() -> pool.execute("b", Options.create(), null));
+            started.await();
+            assertThrows(GraphvizException.class, () -> pool.execute("c", Options.create(), null));
+            finish.countDown();
+            executor.shutdown();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+            assertThat(created.get(), is(2));
+            assertThat(pool.idleEngines(), is(2));
+        }
+    }
+
+    @Test
+    void failedCreationFreesPermit() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch finish = new CountDownLatch(1);
+        final Supplier<GraphvizEngine> factory = () -> {
+            if (created.get() > 0) {
+                throw new IllegalStateException("no more engines");
+            }
+            return new CountingEngine(started, finish);
+        };
+        try (final GraphvizEnginePool pool = init(new GraphvizEnginePool(factory)
+                .size(2).acquireTimeout(0, MILLISECONDS))) {
+            final ExecutorService executor = Executors.newSingleThreadExecutor();
+            executor.submit(() -> pool.execute("a", Options.create(), null));
+            started.await();
+            assertThrows(IllegalStateException.class, () -> pool.execute("b", Options.create(), null));
+            assertThrows(IllegalStateException.class, () -> pool.execute("c", Options.create(), null));
+            finish.countDown();
+            executor.shutdown();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void evictIdle() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(2);
+        final CountDownLatch finish = new CountDownLatch(0);
+        try (final GraphvizEnginePool pool = init(new GraphvizEnginePool(() -> new CountingEngine(started, finish))
+                .size(2).idleTimeout(50, MILLISECONDS))) {
+            final Thread thread = new Thread(() -> pool.execute("a", Options.create(), null));
+            thread.start();
+            pool.execute("b", Options.create(), null);
+            thread.join();
+            assertThat(pool.idleEngines(), is(2));
+            for (int i = 0; i < 100 && pool.idleEngines() > 1; i++) {
+                Thread.sleep(20);
+            }
+            assertThat(pool.idleEngines(), is(1));
+            assertThat(closed.get(), is(1));
+        }
+    }
+
+    @Test
+    void failingEngine() {
+        final GraphvizEnginePool pool = new GraphvizEnginePool(FailingEngine::new);
+        final AtomicInteger errors = new AtomicInteger();
+        pool.init(e -> {
+        }, e -> errors.incrementAndGet());
+        assertThat(errors.get(), is(1));
+    }
+
+    @Test
+    void javascriptEngine() {
+        final GraphvizEnginePool pool = new GraphvizEnginePool(GraphvizV8Engine::new);
+        final AtomicInteger errors = new AtomicInteger();
+        pool.init(e -> {
+        }, e -> errors.incrementAndGet());
+        assertThat(errors.get(), is(1));
+    }
+
+    private GraphvizEnginePool init(GraphvizEnginePool pool) {
+        pool.init(e -> {
+        }, e -> {
+            throw new AssertionError("Pool could not be initialized");
+        });
+        return pool;
+    }
+
+    private class CountingEngine implements GraphvizEngine {
+        @Nullable
+        private final CountDownLatch started;
+        @Nullable
+        private final CountDownLatch finish;
+
+        CountingEngine() {
+            this(null, null);
+        }
+
+        CountingEngine(@Nullable CountDownLatch started, @Nullable CountDownLatch finish) {
+            this.started = started;
+            this.finish = finish;
+            created.incrementAndGet();
+        }
+
+        @Override
+        public void init(Consumer<GraphvizEngine> onOk, Consumer<GraphvizEngine> onError) {
+            onOk.accept(this);
+        }
+
+        @Override
+        public EngineResult execute(String src, Options options, @Nullable Rasterizer rasterizer) {
+            if (started != null && finish != null) {
+                started.countDown();
+                try {
+                    started.await();
+                    finish.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return EngineResult.fromString(src);
+        }
+
+        @Override
+        public void close() {
+            closed.incrementAndGet();
+        }
+    }
+
+    private static class FailingEngine implements GraphvizEngine {
+        @Override
+        public void init(Consumer<GraphvizEngine> onOk, Consumer<GraphvizEngine> onError) {
+            onError.accept(this);
+        }
+
+        @Override
+        public EngineResult execute(String src, Options options, @Nullable Rasterizer rasterizer) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class GraphvizJdkEngineTest {
+    final AtomicInteger created = new AtomicInteger();
+    final List<String> executed = new CopyOnWriteArrayList<>();
+
+    @Test
+    void poolNeedsGraal() {
+        final GraphvizJdkEngine engine = new GraphvizJdkEngine(this::nonGraalEngine).poolSize(2);
+        assertThrows(GraphvizException.class, engine::doInit);
+        assertEquals(asList(2, 0), asList(created.get(), executed.size()));
+    }
+
+    private JavascriptEngine nonGraalEngine() {
+        created.incrementAndGet();
+        return new AbstractJavascriptEngine() {
+            @Override
+            protected String execute(String js) {
+                executed.add(js);
+                return "";
+            }
+        };
+    }
+}
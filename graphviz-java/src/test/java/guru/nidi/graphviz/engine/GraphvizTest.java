@@ -18,12 +18,19 @@ package guru.nidi.graphviz.engine;
 import guru.nidi.graphviz.model.Graph;
 import org.junit.jupiter.api.*;
 
+import javax.annotation.Nullable;
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static guru.nidi.graphviz.model.Factory.graph;
 import static guru.nidi.graphviz.model.Factory.node;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class GraphvizTest {
     @BeforeAll
@@ -64,16 +71,115 @@ class GraphvizTest {
     void executeWithTotalMemory() {
         final Graph graph = graph().with(node("a").link("b"));
         final String result = Graphviz.fromGraph(graph).totalMemory(32000).render(Format.SVG).toString();
-        assertThat(result, is("totalMemory=32000;render('graph {\\n\"a\" -- \"b\"\\n}',"
-                + "{format:'svg',engine:'dot',totalMemory:'32000',basedir:'" + new File(".").getAbsolutePath() + "',images:[]});"));
+        assertThat(result, is("renderValues('graph {\\n\"a\" -- \"b\"\\n}',"
+                + "'{format:\\'svg\\',engine:\\'dot\\',totalMemory:\\'32000\\',basedir:\\'" + new File(".").getAbsolutePath()
+                + "\\',images:[]}','32000')"));
     }
 
     @Test
     void executeWithoutTotalMemory() {
         final Graph graph = graph().with(node("a").link("b"));
         final String result = Graphviz.fromGraph(graph).render(Format.SVG).toString();
-        assertThat(result, is("render('graph {\\n\"a\" -- \"b\"\\n}',"
-                + "{format:'svg',engine:'dot',basedir:'" + new File(".").getAbsolutePath() + "',images:[]});"));
+        assertThat(result, is("renderValues('graph {\\n\"a\" -- \"b\"\\n}',"
+                + "'{format:\\'svg\\',engine:\\'dot\\',basedir:\\'" + new File(".").getAbsolutePath() + "\\',images:[]}','')"));
+    }
+
+    @Test
+    void executeAsync() throws Exception {
+        final Graph graph = graph().with(node("a").link("b"));
+        final String result = Graphviz.fromGraph(graph).render(Format.SVG).toStringAsync().get();
+        assertThat(result, is("renderValues('graph {\\n\"a\" -- \"b\"\\n}',"
+                + "'{format:\\'svg\\',engine:\\'dot\\',basedir:\\'" + new File(".").getAbsolutePath() + "\\',images:[]}','')"));
+    }
+
+    @Test
+    void executeAsyncWithExecutor() throws Exception {
+        final Graph graph = graph().with(node("a").link("b"));
+        final AtomicInteger executions = new AtomicInteger();
+        final Executor executor = task -> {
+            executions.incrementAndGet();
+            task.run();
+        };
+        Graphviz.fromGraph(graph).render(Format.SVG).withExecutor(executor).toStringAsync().get();
+        assertThat(executions.get(), is(1));
+    }
+
+    @Test
+    void executeWithCache() {
+        final LruRenderCache cache = new LruRenderCache(10, 100000);
+        Graphviz.useCache(cache);
+        try {
+            final Graphviz graphviz = Graphviz.fromGraph(graph().with(node("a").link("b")));
+            final String first = graphviz.render(Format.SVG).toString();
+            final String second = graphviz.render(Format.SVG).toString();
+            graphviz.width(100).render(Format.SVG).toString();
+            assertThat(second, is(first));
+            assertThat(cache.hits(), is(1L));
+            assertThat(cache.misses(), is(2L));
+        } finally {
+            Graphviz.useCache(null);
+        }
+    }
+
+    @Test
+    void cacheCopiesResults() {
+        final byte[] output = "plain".getBytes(UTF_8);
+        Graphviz.useEngine(new Utf8Engine(ByteBuffer.wrap(output)));
+        Graphviz.useCache(new LruRenderCache(10, 100000));
+        try {
+            final Graphviz graphviz = Graphviz.fromString("graph {a}");
+            graphviz.render(Format.PLAIN).toString();
+            output[0] = 'X';
+            assertThat(graphviz.render(Format.PLAIN).toString(), is("plain"));
+        } finally {
+            Graphviz.useCache(null);
+            init();
+        }
+    }
+
+    @Test
+    void cacheKeepsResultsPerEngine() {
+        Graphviz.useCache(new LruRenderCache(10, 100000));
+        try {
+            final Graphviz graphviz = Graphviz.fromString("graph {a}");
+            graphviz.render(Format.PLAIN).toString();
+            Graphviz.useEngine(new Utf8Engine(UTF_8.encode("plain")));
+            assertThat(graphviz.render(Format.PLAIN).toString(), is("plain"));
+        } finally {
+            Graphviz.useCache(null);
+            init();
+        }
+    }
+
+    @Test
+    void bytesAreReadOnly() {
+        Graphviz.useEngine(new Utf8Engine(UTF_8.encode("plain")));
+        try {
+            final Renderer renderer = Graphviz.fromString("graph {a}")
+                    .filter((format, result) -> result.mapText(s -> s, b -> b.put(0, (byte) 'X')))
+                    .render(Format.PLAIN);
+            assertThrows(ReadOnlyBufferException.class, renderer::toString);
+        } finally {
+            init();
+        }
+    }
+
+    private static class Utf8Engine extends AbstractGraphvizEngine {
+        private final ByteBuffer output;
+
+        Utf8Engine(ByteBuffer output) {
+            super(true);
+            this.output = output;
+        }
+
+        @Override
+        protected void doInit() {
+        }
+
+        @Override
+        public EngineResult execute(String src, Options options, @Nullable Rasterizer rasterizer) {
+            return EngineResult.fromUtf8(output);
+        }
     }
 
     private void assertThatGraphvizHasFields(Graphviz graphviz, int expectedHeight, int expectedWidth, double expectedScale) {
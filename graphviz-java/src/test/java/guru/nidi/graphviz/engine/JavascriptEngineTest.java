@@ -58,6 +58,24 @@ class JavascriptEngineTest {
         assertEquals("hula", f.executeJavascript("result(a) //", "", ""));
     }
 
+    @Test
+    void v8Function() {
+        final V8JavascriptEngine e = new V8JavascriptEngine();
+        e.executeJavascript("function concat(a, b){ result(a + '|' + b); }");
+        assertEquals("it's|\\\n\"", e.executeFunction("concat", "it's", "\\\n\""));
+    }
+
+    @Test
+    void defaultFunction() {
+        final JavascriptEngine e = new AbstractJavascriptEngine() {
+            @Override
+            protected String execute(String js) {
+                return js;
+            }
+        };
+        assertEquals("f('it\\'s','\\\\\\n')", e.executeFunction("f", "it's", "\\\r\n"));
+    }
+
     @ParameterizedTest
     @MethodSource
     void threading(Supplier<JavascriptEngine> engineSupplier) throws InterruptedException, ExecutionException {
@@ -0,0 +1,91 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.engine;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LruRenderCacheTest {
+    @Test
+    void hitAndMiss() {
+        final LruRenderCache cache = new LruRenderCache(10, 1000);
+        cache.put("a", new byte[]{1});
+        assertThat(cache.get("a"), is(new byte[]{1}));
+        assertThat(cache.get("b"), nullValue());
+        assertThat(cache.hits(), is(1L));
+        assertThat(cache.misses(), is(1L));
+    }
+
+    @Test
+    void negativeLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new LruRenderCache(-1, 1000));
+        assertThrows(IllegalArgumentException.class, () -> new LruRenderCache(10, -1));
+    }
+
+    @Test
+    void evictByEntries() {
+        final LruRenderCache cache = new LruRenderCache(2, 1000);
+        cache.put("a", new byte[]{1});
+        cache.put("b", new byte[]{2});
+        cache.get("a");
+        cache.put("c", new byte[]{3});
+        assertThat(cache.size(), is(2));
+        assertThat(cache.get("b"), nullValue());
+        assertThat(cache.get("a"), is(new byte[]{1}));
+    }
+
+    @Test
+    void evictByBytes() {
+        final LruRenderCache cache = new LruRenderCache(10, 10);
+        cache.put("a", new byte[6]);
+        cache.put("b", new byte[6]);
+        cache.put("c", new byte[20]);
+        assertThat(cache.size(), is(1));
+        assertThat(cache.bytes(), is(6L));
+        assertThat(cache.get("b"), is(new byte[6]));
+    }
+
+    @Test
+    void diskTier() throws IOException {
+        final File dir = new File("target/render-cache");
+        FileUtils.deleteDirectory(dir);
+        new LruRenderCache(10, 1000).diskTier(dir).put("a", new byte[]{1});
+        final LruRenderCache cache = new LruRenderCache(10, 1000).diskTier(dir);
+        assertThat(cache.get("a"), is(new byte[]{1}));
+        assertThat(cache.size(), is(1));
+    }
+
+    @Test
+    void boundedDiskTier() throws IOException {
+        final File dir = new File("target/render-cache-bounded");
+        FileUtils.deleteDirectory(dir);
+        final LruRenderCache cache = new LruRenderCache(0, 0).diskTier(dir, 10);
+        cache.put("a", new byte[6]);
+        assertTrue(new File(dir, "a").setLastModified(System.currentTimeMillis() - 10000));
+        cache.put("b", new byte[6]);
+        assertThat(cache.get("a"), nullValue());
+        assertThat(cache.get("b"), is(new byte[6]));
+    }
+}
@@ -22,12 +22,16 @@ import org.junit.jupiter.api.condition.DisabledIfEnvironmentVariable;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.Arrays;
 
 import static guru.nidi.graphviz.model.Factory.graph;
 import static guru.nidi.graphviz.model.Factory.node;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -79,6 +83,49 @@ class RendererTest {
         assertThat((int) out.length(), greaterThan(19000));
     }
 
+    @Test
+    void utf8ToOutputStream() throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        renderer(EngineResult.fromUtf8(UTF_8.encode("<svg>\u00e4</svg>"))).toOutputStream(out);
+        assertThat(new String(out.toByteArray(), UTF_8), is("<svg>\u00e4</svg>"));
+    }
+
+    @Test
+    void utf8ToString() {
+        assertThat(renderer(EngineResult.fromUtf8(UTF_8.encode("<svg>\u00e4</svg>"))).toString(),
+                is("<svg>\u00e4</svg>"));
+    }
+
+    @Test
+    void fileToOutputStream() throws IOException {
+        final File file = File.createTempFile("result", ".svg");
+        Files.write(file.toPath(), "<svg/>".getBytes(UTF_8));
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        renderer(EngineResult.fromFile(file)).toOutputStream(out);
+        assertThat(new String(out.toByteArray(), UTF_8), is("<svg/>"));
+    }
+
+    @Test
+    void bytesToOutputStreamCloses() throws IOException {
+        final ClosingStream out = new ClosingStream();
+        new Renderer(Graphviz.fromString("graph {}"), null, Format.PNG, EngineResult.fromBytes(new byte[]{1, 2}))
+                .toOutputStream(out);
+        assertTrue(out.closed && Arrays.equals(out.toByteArray(), new byte[]{1, 2}));
+    }
+
+    private static class ClosingStream extends ByteArrayOutputStream {
+        boolean closed;
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private Renderer renderer(EngineResult result) {
+        return new Renderer(Graphviz.fromString("graph {}"), null, Format.SVG, result);
+    }
+
     @Test
     @DisabledIfEnvironmentVariable(named = "CI", matches = ".*")
     void builtInRasterizer() throws IOException {
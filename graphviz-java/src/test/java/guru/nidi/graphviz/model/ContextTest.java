@@ -24,6 +24,7 @@ import java.util.List;
 import static guru.nidi.graphviz.model.Factory.*;
 import static java.util.Arrays.asList;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class ContextTest {
     @BeforeAll
@@ -44,7 +45,7 @@ class ContextTest {
                     node("a").with(Color.BLUE),
                     node("b"));
         });
-        assertEquals(mutGraph().add(
+        assertGraph(mutGraph().add(
                 node("a").with(Color.BLUE),
                 node("b").with(Color.RED)),
                 g);
@@ -58,7 +59,7 @@ class ContextTest {
                     node("a").link(to(node("b")).with(Color.BLUE)),
                     node("b").link(node("c")));
         });
-        assertEquals(mutGraph().add(
+        assertGraph(mutGraph().add(
                 node("a").link(to(node("b")).with(Color.BLUE)),
                 node("b").link(to(node("c")).with(Color.RED))),
                 g);
@@ -77,4 +78,9 @@ class ContextTest {
                 mutGraph().graphAttrs().add(Color.RED)),
                 gs);
     }
+
+    //graphs built separately have distinct node objects, so they are compared by structure
+    private static void assertGraph(MutableGraph expected, MutableGraph actual) {
+        assertTrue(expected.structurallyEquals(actual), () -> "expected:\n" + expected + "\nbut was:\n" + actual);
+    }
 }
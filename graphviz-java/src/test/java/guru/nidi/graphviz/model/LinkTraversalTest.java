@@ -0,0 +1,56 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static guru.nidi.graphviz.model.Factory.mutNode;
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+class LinkTraversalTest {
+    @Test
+    void preOrder() {
+        final MutableNode a = mutNode("a");
+        final MutableNode b = mutNode("b");
+        final MutableNode c = mutNode("c");
+        final MutableNode d = mutNode("d");
+        a.addLink(b, c);
+        b.addLink(d, a);
+        c.addLink(d);
+        final List<MutableNode> visited = new ArrayList<>();
+        final Set<MutableNode> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        LinkTraversal.traverse(a, n -> seen.add(n) && visited.add(n), LinkTraversal::portNode);
+        assertThat(visited, is(asList(a, b, d, c)));
+    }
+
+    @Test
+    void deepChain() {
+        final MutableNode first = mutNode("n0");
+        MutableNode last = first;
+        for (int i = 1; i < 100_000; i++) {
+            final MutableNode node = mutNode("n" + i);
+            last.addLink(node);
+            last = node;
+        }
+        final List<MutableNode> visited = new ArrayList<>();
+        LinkTraversal.traverse(first, visited::add, LinkTraversal::portNode);
+        assertThat(visited.get(visited.size() - 1) == last, is(true));
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.model;
+
+import org.junit.jupiter.api.Test;
+
+import static guru.nidi.graphviz.model.Factory.mutGraph;
+import static guru.nidi.graphviz.model.Factory.mutNode;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MutableGraphTest {
+    @Test
+    void equalNodesKeptByIdentity() {
+        assertEquals(2, mutGraph().add(mutNode("a"), mutNode("a")).rootNodes().size());
+    }
+
+    @Test
+    void equalNodesCollectedOnce() {
+        assertEquals(2, graphWithEqualNodes().nodes().size());
+    }
+
+    @Test
+    void equalEdgesCollectedOnce() {
+        assertEquals(1, graphWithEqualNodes().edges().size());
+    }
+
+    @Test
+    void equalsNeedsSameNodes() {
+        assertNotEquals(graphWithEqualNodes(), graphWithEqualNodes());
+    }
+
+    @Test
+    void structurallyEquals() {
+        assertTrue(graphWithEqualNodes().structurallyEquals(graphWithEqualNodes()));
+    }
+
+    @Test
+    void notStructurallyEquals() {
+        assertFalse(graphWithEqualNodes().structurallyEquals(mutGraph().add(mutNode("a").addLink("c"))));
+    }
+
+    private MutableGraph graphWithEqualNodes() {
+        return mutGraph().add(mutNode("a").addLink("b"), mutNode("a").addLink("b"));
+    }
+}
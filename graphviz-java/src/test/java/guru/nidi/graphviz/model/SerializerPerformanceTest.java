@@ -0,0 +1,56 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.model;
+
+import java.util.Random;
+
+import static guru.nidi.graphviz.model.Factory.mutGraph;
+import static guru.nidi.graphviz.model.Factory.mutNode;
+
+public class SerializerPerformanceTest {
+    public static void main(String[] args) {
+        final SerializerPerformanceTest pt = new SerializerPerformanceTest();
+        for (int k = 0; k < 3; k++) {
+            pt.test(10_000);
+        }
+        pt.test(100_000);
+        pt.test(1_000_000);
+    }
+
+    private void test(int elements) {
+        final MutableGraph g = graph(elements);
+        final long a = System.nanoTime();
+        final int len = g.toString().length();
+        final long b = System.nanoTime();
+        System.out.printf("%,d elements: %.1f ms (%,d chars)%n", elements, (b - a) / 1e6, len);
+    }
+
+    //the elements are split equally into link sources, link targets and links
+    private MutableGraph graph(int elements) {
+        final Random random = new Random(42);
+        final int n = elements / 3;
+        final MutableNode[] targets = new MutableNode[n];
+        final MutableGraph g = mutGraph().setDirected(true);
+        for (int i = 0; i < n; i++) {
+            targets[i] = mutNode("t" + i);
+            g.add(targets[i]);
+        }
+        for (int i = 0; i < n; i++) {
+            g.add(mutNode("s" + i).addLink(targets[random.nextInt(n)]));
+        }
+        return g;
+    }
+}
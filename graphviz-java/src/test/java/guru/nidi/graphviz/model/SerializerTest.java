@@ -18,9 +18,13 @@ package guru.nidi.graphviz.model;
 import guru.nidi.graphviz.attribute.Label;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.io.StringWriter;
+
 import static guru.nidi.graphviz.model.Compass.*;
 import static guru.nidi.graphviz.model.Factory.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class SerializerTest {
     @Test
@@ -165,6 +169,47 @@ class SerializerTest {
                         graph().directed().with(node("b").link(node("c"))))));
     }
 
+    @Test
+    void equalNodes() {
+        assertGraph("graph {\n'x' -- 'a'\n'a' -- 'b'\n'y' -- 'a'\n}", graph()
+                .with(node("x").link(node("a").link("b")), node("y").link(node("a").link("b"))));
+    }
+
+    @Test
+    void deepChain() {
+        final MutableGraph g = mutGraph();
+        MutableNode last = mutNode("n0");
+        g.add(last);
+        for (int i = 1; i < 30_000; i++) {
+            final MutableNode node = mutNode("n" + i);
+            last.addLink(node);
+            last = node;
+        }
+        assertTrue(g.toString().endsWith("\"n29998\" -- \"n29999\"\n}"));
+    }
+
+    @Test
+    void writeTo() throws IOException {
+        final MutableGraph g = mutGraph().setDirected(true);
+        for (int i = 0; i < 5000; i++) {
+            g.add(mutNode("n" + i).addLink(mutNode("n" + (i + 1))));
+        }
+        final StringWriter out = new StringWriter();
+        g.writeTo(out);
+        assertEquals(g.toString(), out.toString());
+    }
+
+    @Test
+    void equalNodesSerializedOnce() {
+        assertGraph("graph {\n'a' -- 'b'\n}", mutGraph()
+                .add(mutNode("a").addLink("b"), mutNode("a").addLink("b")).toImmutable());
+    }
+
+    @Test
+    void equalUnlinkedNodesSerializedOnce() {
+        assertGraph("graph {\n'a'\n}", mutGraph().add(mutNode("a"), mutNode("a")).toImmutable());
+    }
+
     private void assertGraph(String expected, Graph graph) {
         assertEquals(expected.replace("'", "\""), new Serializer((MutableGraph) graph).serialize());
     }
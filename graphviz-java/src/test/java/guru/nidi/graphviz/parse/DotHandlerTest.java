@@ -0,0 +1,89 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.parse;
+
+import guru.nidi.graphviz.attribute.Label;
+import guru.nidi.graphviz.attribute.validate.AttributeValidator.Scope;
+import org.junit.jupiter.api.Test;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.*;
+
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DotHandlerTest {
+    @Test
+    void events() throws IOException {
+        final RecordingHandler handler = new RecordingHandler();
+        new Parser().read("digraph g { node[shape=box]; a [label=<b>]; a -> subgraph s { b:p:n } -> c [color=red] }",
+                handler);
+        assertEquals(asList("graph true g", "attributes NODE {shape=box}", "node a {label=b}",
+                "subgraph s", "node b {}", "end 1 false", "edge a subgraph 1 {color=red}",
+                "edge subgraph 1 c {color=red}", "end graph"), handler.events);
+    }
+
+    @Test
+    void standaloneSubgraph() throws IOException {
+        final RecordingHandler handler = new RecordingHandler();
+        new Parser().read("graph { x=y {a} }", handler);
+        assertEquals(asList("graph false null", "attributes GRAPH {x=y}",
+                "subgraph null", "node a {}", "end 1 true", "end graph"), handler.events);
+    }
+
+    private static class RecordingHandler implements DotHandler {
+        final List<String> events = new ArrayList<>();
+        int subgraphs;
+
+        @Override
+        public void onGraphStart(boolean strict, boolean directed, @Nullable Label name) {
+            events.add("graph " + directed + " " + name);
+        }
+
+        @Override
+        public void onGraphEnd() {
+            events.add("end graph");
+        }
+
+        @Override
+        public void onSubgraphStart(@Nullable Label name) {
+            events.add("subgraph " + name);
+        }
+
+        @Override
+        public Object onSubgraphEnd(boolean standalone) {
+            subgraphs++;
+            events.add("end " + subgraphs + " " + standalone);
+            return subgraphs;
+        }
+
+        @Override
+        public void onAttributes(Scope scope, Map<String, Label> attributes) {
+            events.add("attributes " + scope + " " + attributes);
+        }
+
+        @Override
+        public void onNode(Label name, Map<String, Label> attributes) {
+            events.add("node " + name + " " + attributes);
+        }
+
+        @Override
+        public void onEdge(Endpoint from, Endpoint to, Map<String, Label> attributes) {
+            events.add("edge " + from + " " + to + " " + attributes);
+        }
+    }
+}
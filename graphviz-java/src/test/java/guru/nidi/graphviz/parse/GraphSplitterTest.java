@@ -0,0 +1,61 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.parse;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class GraphSplitterTest {
+    @Test
+    void simple() {
+        assertSplit("graph {a}\n digraph {b->{c}}", "graph {a}", "\n digraph {b->{c}}");
+    }
+
+    @Test
+    void ignoreBracesInStrings() {
+        assertSplit("graph {a [label=\"}\\\"}\"]} graph {b [label=<<b>}</b>>]}",
+                "graph {a [label=\"}\\\"}\"]}", " graph {b [label=<<b>}</b>>]}");
+    }
+
+    @Test
+    void ignoreBracesInComments() {
+        assertSplit("graph {a //}\n/*}*/}\n#}\ngraph {b}", "graph {a //}\n/*}*/}", "\n#}\ngraph {b}");
+    }
+
+    @Test
+    void ignoreTrailingComment() {
+        assertSplit("graph {a} /* end */ \n", "graph {a}");
+    }
+
+    @Test
+    void keepTrailingContent() {
+        assertSplit("graph {a} graph", "graph {a}", " graph");
+    }
+
+    private void assertSplit(String content, String... graphs) {
+        final List<String> split = GraphSplitter.split(ByteBuffer.wrap(content.getBytes(UTF_8))).stream()
+                .map(b -> UTF_8.decode(b).toString())
+                .collect(toList());
+        assertEquals(asList(graphs), split);
+    }
+}
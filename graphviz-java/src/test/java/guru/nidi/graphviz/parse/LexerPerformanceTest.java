@@ -0,0 +1,55 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.parse;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static guru.nidi.graphviz.parse.Token.EOF;
+
+public class LexerPerformanceTest {
+    public static void main(String[] args) throws IOException {
+        final LexerPerformanceTest pt = new LexerPerformanceTest();
+        final String dot = pt.dot(500_000);
+        for (int i = 0; i < 10; i++) {
+            pt.test(dot);
+        }
+    }
+
+    private void test(String dot) throws IOException {
+        final long a = System.nanoTime();
+        final Lexer lexer = new Lexer(new StringReader(dot), "test");
+        int tokens = 0;
+        while (lexer.token().type != EOF) {
+            tokens++;
+        }
+        final long b = System.nanoTime();
+        System.out.printf("%,d tokens in %.1f ms (%.1f MB/s)%n", tokens, (b - a) / 1e6, dot.length() / ((b - a) / 1e3));
+    }
+
+    private String dot(int edges) {
+        final StringBuilder s = new StringBuilder(30_000_000);
+        s.append("digraph big {\nnode [shape=box, color=\"#ff0000\"]\n");
+        for (int i = 0; i < edges; i++) {
+            s.append("node").append(i % 5000).append(" -> node").append((i * 7) % 5000)
+                    .append(" [label=\"edge ").append(i).append("\", weight=").append(i % 10).append(".5]\n");
+            if (i % 1000 == 0) {
+                s.append("// comment\nsubgraph cluster_").append(i).append(" { label=<<b>html</b>> }\n");
+            }
+        }
+        return s.append("}\n").toString();
+    }
+}
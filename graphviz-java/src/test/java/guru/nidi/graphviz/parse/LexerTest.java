@@ -24,6 +24,7 @@ import java.util.*;
 
 import static guru.nidi.graphviz.parse.Token.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 class LexerTest {
     @Test
@@ -92,6 +93,31 @@ class LexerTest {
         assertTokens("<<text>>", token(ID, SUB_HTML, "<text>"));
     }
 
+    @Test
+    void noKeyword() throws IOException {
+        assertTokens("nodes edg graph_ Strict1 subgrapH",
+                token(ID, SUB_SIMPLE, "nodes"), token(ID, SUB_SIMPLE, "edg"), token(ID, SUB_SIMPLE, "graph_"),
+                token(ID, SUB_SIMPLE, "Strict1"), token(SUBGRAPH, "subgrapH"));
+    }
+
+    @Test
+    void reuseIds() throws IOException {
+        final List<Token> tokens = lexAll("abc -- abc");
+        assertSame(tokens.get(0).value, tokens.get(2).value);
+    }
+
+    @Test
+    void longInput() throws IOException {
+        final StringBuilder s = new StringBuilder(300_000);
+        final List<Token> expected = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            s.append("\"quoted ").append(i).append("\" -- x").append(i).append('\n');
+            expected.addAll(Arrays.asList(token(ID, SUB_QUOTED, "quoted " + i),
+                    token(MINUS_MINUS, "--"), token(ID, SUB_SIMPLE, "x" + i)));
+        }
+        assertEquals(expected, lexAll(s.toString()));
+    }
+
     private void assertTokens(String s, Token... expected) throws IOException {
         assertEquals(Arrays.asList(expected), lexAll(s));
     }
@@ -0,0 +1,57 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.parse;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MappedFileReaderTest {
+    @Test
+    void multiByteCharsAcrossChunks() throws IOException {
+        final StringBuilder s = new StringBuilder(1000);
+        for (int i = 0; i < 100; i++) {
+            s.append("a\u00e4\u20ac\ud83d\ude00").append(i);
+        }
+        final Path file = Paths.get("target/mapped.txt");
+        Files.write(file, s.toString().getBytes(StandardCharsets.UTF_8));
+        assertEquals(s.toString(), readAll(new MappedFileReader(file, 5)));
+    }
+
+    @Test
+    void emptyFile() throws IOException {
+        final Path file = Paths.get("target/mapped-empty.txt");
+        Files.write(file, new byte[0]);
+        assertEquals("", readAll(new MappedFileReader(file)));
+    }
+
+    private String readAll(Reader reader) throws IOException {
+        try (final Reader in = reader) {
+            final StringBuilder s = new StringBuilder(1000);
+            final char[] buf = new char[7];
+            int read;
+            while ((read = in.read(buf, 0, buf.length)) >= 0) {
+                s.append(buf, 0, read);
+            }
+            return s.toString();
+        }
+    }
+}
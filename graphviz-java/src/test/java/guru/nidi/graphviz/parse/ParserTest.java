@@ -17,13 +17,17 @@ package guru.nidi.graphviz.parse;
 
 import guru.nidi.graphviz.attribute.*;
 import guru.nidi.graphviz.attribute.validate.ValidatorMessage;
+import guru.nidi.graphviz.model.CreationContext;
 import guru.nidi.graphviz.model.MutableGraph;
 import guru.nidi.graphviz.model.MutableNode;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.IntStream;
 
 import static guru.nidi.graphviz.attribute.Attributes.attr;
 import static guru.nidi.graphviz.attribute.validate.ValidatorMessage.Severity.ERROR;
@@ -33,13 +37,14 @@ import static guru.nidi.graphviz.model.Factory.*;
 import static guru.nidi.graphviz.model.Link.between;
 import static guru.nidi.graphviz.model.Link.to;
 import static java.util.Arrays.asList;
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.*;
 
 class ParserTest {
     @Test
     void emptyGraph() throws IOException {
         final Pars pars = new Pars();
-        assertEquals(mutGraph("bla"), pars.parser.read("graph bla{}"));
+        assertGraph(mutGraph("bla"), pars.parser.read("graph bla{}"));
         assertEquals(asList(), pars.messages);
     }
 
@@ -54,7 +59,7 @@ class ParserTest {
     @Test
     void emptyStrictDigraph() throws IOException {
         final Pars pars = new Pars();
-        assertEquals(mutGraph("bla").setStrict(true).setDirected(true),
+        assertGraph(mutGraph("bla").setStrict(true).setDirected(true),
                 pars.parser.read("strict digraph <bla>{}"));
         assertEquals(asList(), pars.messages);
     }
@@ -62,7 +67,7 @@ class ParserTest {
     @Test
     void attributesGraph() throws IOException {
         final Pars pars = new Pars();
-        assertEquals(mutGraph()
+        assertGraph(mutGraph()
                         .graphAttrs().add(attr("x", "y"), attr("a", "b"))
                         .add(mutNode("a").add(attr("c", "d")).addLink(to(mutNode("b").add(attr("c", "d")))
                                 .with(attr("e", "f"), attr("g", "h"), attr("i", "j")))),
@@ -80,7 +85,7 @@ class ParserTest {
     @Test
     void nodes() throws IOException {
         final Pars pars = new Pars();
-        assertEquals(mutGraph().add(mutNode("simple"), mutNode("with").add("dpi", "b")),
+        assertGraph(mutGraph().add(mutNode("simple"), mutNode("with").add("dpi", "b")),
                 pars.parser.read("graph { simple with[\"dpi\"=b]}")); //TODO with port? "d:1 full:1:ne
         assertEquals(asList(
                 new ValidatorMessage(ERROR, "dpi", "Attribute is not allowed for scope 'NODE'.", 1, 23),
@@ -96,7 +101,7 @@ class ParserTest {
                 d = mutNode("d"),
                 full = mutNode("full");
         final Pars pars = new Pars();
-        assertEquals(mutGraph().add(
+        assertGraph(mutGraph().add(
                 simple.addLink(to(c.port("2")).with("a", "b")),
                 c.addLink(between(port("2"), d.port(SOUTH_WEST)).with("a", "b")),
                 d.addLink(between(port(SOUTH_WEST), full.port("2", NORTH_EAST)).with("a", "b"))),
@@ -109,7 +114,7 @@ class ParserTest {
     @Test
     void subgraph() throws IOException {
         final Pars pars = new Pars();
-        assertEquals(mutGraph().add(
+        assertGraph(mutGraph().add(
                 mutGraph("s").graphAttrs().add("dpi", "b"),
                 mutGraph().graphAttrs().add("c", "d"),
                 mutGraph().graphAttrs().add("e", "f")),
@@ -125,7 +130,7 @@ class ParserTest {
     @Test
     void leftSubgraphEdge() throws IOException {
         final Pars pars = new Pars();
-        assertEquals(mutGraph().add(
+        assertGraph(mutGraph().add(
                 mutGraph().addLink(to(mutNode("x")).with("a", "b")),
                 mutGraph().addLink(mutNode("y")),
                 mutGraph("a").addLink(mutNode("z"))),
@@ -138,7 +143,7 @@ class ParserTest {
     @Test
     void rightSubgraphEdge() throws IOException {
         final Pars pars = new Pars();
-        assertEquals(mutGraph().add(
+        assertGraph(mutGraph().add(
                 mutNode("x").addLink(to(mutGraph()).with("a", "b")),
                 mutNode("y").addLink(mutGraph()),
                 mutNode("z").addLink(mutGraph("a"))),
@@ -151,7 +156,7 @@ class ParserTest {
     @Test
     void subgraphSubgraphEdge() throws IOException {
         final Pars pars = new Pars();
-        assertEquals(mutGraph().add(
+        assertGraph(mutGraph().add(
                 mutGraph().addLink(to(mutGraph()).with("a", "b")),
                 mutGraph().addLink(mutGraph()),
                 mutGraph().addLink(mutGraph("a"))),
@@ -164,7 +169,7 @@ class ParserTest {
     @Test
     void inheritDirected() throws IOException {
         final Pars pars = new Pars();
-        assertEquals(mutGraph().setDirected(true).add(
+        assertGraph(mutGraph().setDirected(true).add(
                 mutGraph().setDirected(true).add(mutNode("a").addLink("b"))),
                 pars.parser.read("digraph { subgraph { a -> b } }"));
         assertEquals(asList(), pars.messages);
@@ -173,7 +178,7 @@ class ParserTest {
     @Test
     void emptyString() throws IOException {
         final Pars pars = new Pars();
-        assertEquals(mutGraph().add(mutNode(""), mutNode("a").add("label", Label.of(""))),
+        assertGraph(mutGraph().add(mutNode(""), mutNode("a").add("label", Label.of(""))),
                 pars.parser.read("graph { \"\" a [label=\"\"] }"));
         assertEquals(asList(), pars.messages);
     }
@@ -183,7 +188,7 @@ class ParserTest {
         final Pars pars = new Pars();
         final MutableNode b = mutNode("b").add(Color.BLUE, attr("dpi", "1"), Shape.EGG);
         final MutableNode a = mutNode("a").add(Color.RED, attr("dpi", "1")).addLink(b);
-        assertEquals(mutGraph().add(a),
+        assertGraph(mutGraph().add(a),
                 pars.parser.read("graph { node[color=red, dpi=1] a node[color=blue, shape=egg] a -- b }"));
         assertEquals(asList(
                 new ValidatorMessage(ERROR, "dpi", "Attribute is not allowed for scope 'NODE'.", 1, 25)),
@@ -196,7 +201,7 @@ class ParserTest {
         final MutableNode a = mutNode("a").addLink(to(b).with(Color.RED, attr("width", "x")))
                 .addLink(to(b).with(Color.BLUE, attr("width", "x"), attr("a", "b")));
         final Pars pars = new Pars();
-        assertEquals(mutGraph().add(a),
+        assertGraph(mutGraph().add(a),
                 pars.parser.read("graph { edge[color=red, width=x] a -- b edge[color=blue, a=b] a -- b }"));
         assertEquals(asList(
                 new ValidatorMessage(ERROR, "width", "Attribute is not allowed for scope 'EDGE'.", 1, 25),
@@ -208,11 +213,82 @@ class ParserTest {
     @Test
     void cluster() throws IOException {
         final Pars pars = new Pars();
-        assertEquals(mutGraph().add(mutGraph("sub").setCluster(true)),
+        assertGraph(mutGraph().add(mutGraph("sub").setCluster(true)),
                 pars.parser.read("graph { subgraph cluster_sub {} }"));
         assertEquals(asList(), pars.messages);
     }
 
+    @Test
+    void readPath() throws IOException {
+        final Path file = Paths.get("target/parser-path.dot");
+        final String dot = "graph { \"\u00e4\u20ac\" -- b [label=\"\ud83d\ude00\"] }";
+        Files.write(file, dot.getBytes(StandardCharsets.UTF_8));
+        final Pars pars = new Pars();
+        assertGraph(pars.parser.read(dot), pars.parser.read(file));
+    }
+
+    @Test
+    void readAll() throws IOException {
+        final Path file = Paths.get("target/parser-all.dot");
+        final StringBuilder dot = new StringBuilder(1000);
+        for (int i = 0; i < 50; i++) {
+            dot.append("graph g").append(i).append(" { a -- b [label=\"}\"] }\n");
+        }
+        Files.write(file, dot.toString().getBytes(StandardCharsets.UTF_8));
+        final List<String> names = new Pars().parser.readAll(file)
+                .map(g -> g.name().toString())
+                .collect(toList());
+        assertEquals(IntStream.range(0, 50).mapToObj(i -> "g" + i).collect(toList()), names);
+    }
+
+    @Test
+    void noValidation() throws IOException {
+        final Pars pars = new Pars();
+        final String dot = "graph { a [x=1] b -- c [y=2] }";
+        assertGraph(new Parser().read(dot), pars.parser.validation(Parser.Validation.NONE).read(dot));
+        assertEquals(asList(), pars.messages);
+    }
+
+    @Test
+    void lazyValidation() throws IOException {
+        assertSameMessages(Parser.Validation.LAZY);
+    }
+
+    @Test
+    void lazyParallelValidation() throws IOException {
+        assertSameMessages(Parser.Validation.LAZY_PARALLEL);
+    }
+
+    private void assertSameMessages(Parser.Validation validation) throws IOException {
+        final String dot = "graph { a [x=1]; b -- c [y=2]; z=3; d [color=red] }";
+        final Pars eager = new Pars();
+        eager.parser.read(dot);
+        final Pars lazy = new Pars();
+        lazy.parser.validation(validation).read(dot);
+        assertEquals(eager.messages, lazy.messages);
+    }
+
+    @Test
+    void noContextLeftAfterError() {
+        assertThrows(ParserException.class, () -> new Parser().read("graph { subgraph { a -> b } }"));
+        assertFalse(CreationContext.current().isPresent());
+    }
+
+    @Test
+    void callerContextNotUsed() {
+        final MutableGraph g = CreationContext.use(ctx -> {
+            ctx.nodeAttrs().add("color", "red");
+            ctx.linkAttrs().add("color", "blue");
+            return new Parser().read("graph { a -- b }");
+        });
+        assertGraph(mutGraph().add(mutNode("a").addLink(mutNode("b"))), g);
+    }
+
+    //graphs built separately have distinct node objects, so they are compared by structure
+    private static void assertGraph(MutableGraph expected, MutableGraph actual) {
+        assertTrue(expected.structurallyEquals(actual), () -> "expected:\n" + expected + "\nbut was:\n" + actual);
+    }
+
     static class Pars {
         final List<ValidatorMessage> messages = new ArrayList<>();
         final Parser parser = new Parser().messageConsumer(messages::add);
@@ -23,9 +23,13 @@ import org.mockito.*;
 import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isNull;
 import static org.mockito.Mockito.verify;
@@ -47,7 +51,7 @@ class CommandRunnerTest {
     @Test
     void testRunEchoHelloWorld() throws IOException, InterruptedException {
         final CommandLine expected = System.getProperty("os.name").contains("Windows")
-                ? CommandLine.parse("cmd /C echo hello world")
+                ? CommandLine.parse("cmd /C").addArgument("\"echo hello world\"", false)
                 : CommandLine.parse("/bin/sh -c").addArgument("echo hello world", false);
 
         final CommandLineExecutor cmdExecMock = Mockito.mock(CommandLineExecutor.class);
@@ -71,6 +75,21 @@ class CommandRunnerTest {
         cmdRunner.exec("echo", 5000, Arrays.asList("hello", "world"));
     }
 
+    @Test
+    void testQuotedCommand() throws IOException, InterruptedException {
+        assumeFalse(System.getProperty("os.name").contains("Windows"));
+        final Path dir = Files.createTempDirectory("with space");
+        final Path exe = dir.resolve("my echo");
+        Files.write(exe, "#!/bin/sh\nprintf %s \"$1\" > \"$2\"\n".getBytes(StandardCharsets.UTF_8));
+        exe.toFile().setExecutable(true);
+        final CommandRunner cmdRunner = new CommandBuilder()
+                .withShellWrapper(true)
+                .build();
+
+        cmdRunner.exec(Arrays.asList(exe.toString(), "a b", dir.resolve("out put").toString()), dir.toFile(), 5000);
+        assertEquals("a b", new String(Files.readAllBytes(dir.resolve("out put")), StandardCharsets.UTF_8));
+    }
+
     @Test
     void testEnv() throws IOException, InterruptedException {
         final CommandRunner cmdRunner = new CommandBuilder()
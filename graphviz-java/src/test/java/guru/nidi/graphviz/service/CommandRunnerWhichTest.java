@@ -17,8 +17,11 @@ package guru.nidi.graphviz.service;
 
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -53,4 +56,24 @@ class CommandRunnerWhichTest {
         assertThat(CommandRunner.isExecutableFound(CMD_NOT_EXISTS), is(false));
     }
 
+    @Test
+    void findExecutable() throws IOException {
+        final Path exe = createExecutable();
+        assertThat(CommandRunner.findExecutable("prog", exe.getParent().toString()), is(Optional.of(exe)));
+    }
+
+    @Test
+    void findRemovedExecutable() throws IOException {
+        final Path exe = createExecutable();
+        CommandRunner.findExecutable("prog", exe.getParent().toString());
+        Files.delete(exe);
+        assertThat(CommandRunner.findExecutable("prog", exe.getParent().toString()), is(Optional.empty()));
+    }
+
+    private Path createExecutable() throws IOException {
+        final Path exe = Files.createFile(Files.createTempDirectory("which").resolve("prog"));
+        exe.toFile().setExecutable(true);
+        return exe;
+    }
+
 }
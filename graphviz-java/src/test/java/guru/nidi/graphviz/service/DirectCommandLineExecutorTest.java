@@ -0,0 +1,79 @@
+/*
+ * Copyright © 2015 Stefan Niederhauser (nidin@gmx.ch)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package guru.nidi.graphviz.service;
+
+import org.apache.commons.exec.CommandLine;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+
+class DirectCommandLineExecutorTest {
+    private final DirectCommandLineExecutor executor = new DirectCommandLineExecutor();
+
+    @BeforeAll
+    static void init() {
+        assumeFalse(System.getProperty("os.name").startsWith("Windows"));
+    }
+
+    @Test
+    void argumentsWithoutShell() throws IOException, InterruptedException {
+        final Path dir = Files.createTempDirectory("direct");
+        executor.execute(new CommandLine("touch").addArgument("a file; rm -rf x", false), dir.toFile(), 5000);
+        assertThat(Files.exists(dir.resolve("a file; rm -rf x")), is(true));
+    }
+
+    @Test
+    void quotedArgument() throws IOException, InterruptedException {
+        final Path dir = Files.createTempDirectory("direct");
+        executor.execute(new CommandLine("touch").addArgument("a b", true), dir.toFile(), 5000);
+        assertThat(Files.exists(dir.resolve("a b")), is(true));
+    }
+
+    @Test
+    void failure() {
+        final IOException e = assertThrows(IOException.class, () -> executor.execute(
+                new CommandLine("sh").addArgument("-c", false).addArgument("echo broken >&2; exit 1", false),
+                null, 5000));
+        assertThat(e.getMessage(), is("broken"));
+    }
+
+    @Test
+    void timeout() {
+        final IOException e = assertThrows(IOException.class, () ->
+                executor.execute(new CommandLine("sleep").addArgument("5"), new File("."), 100));
+        assertThat(e.getMessage(), containsString("took too long"));
+    }
+
+    @Test
+    void runner() throws IOException, InterruptedException {
+        final CommandRunner runner = new CommandBuilder().withCommandExecutor(executor).build();
+        final Path dir = Files.createTempDirectory("direct");
+        runner.exec(asList("sh", "-c", "printf ok > out.txt"), dir.toFile(), 5000);
+        assertThat(new String(Files.readAllBytes(dir.resolve("out.txt")), StandardCharsets.UTF_8), is("ok"));
+    }
+}